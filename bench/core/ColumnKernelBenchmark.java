@@ -0,0 +1,105 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the scalar and vector column kernels on synthetic columns laid out
+ * like the column store's, single-threaded so the per-core speedup is seen
+ * apart from fork-join scaling. Both kernels must agree on every query.
+ * It lives in its own source root, bench, which the application build
+ * leaves out; build it against src and src-vector, see {@link ColumnKernels}:
+ *
+ * <pre>
+ * javac -cp out -d bench-out bench/core/*.java
+ * java --add-modules jdk.incubator.vector -XX:MaxDirectMemorySize=4g \
+ *     -cp out:bench-out core.ColumnKernelBenchmark [rows ...]
+ * </pre>
+ *
+ * Rows default to 1M, 10M and 100M; each million rows takes 20MB.
+ */
+public class ColumnKernelBenchmark {
+    private static final int USERS = 1000;
+    private static final int CATEGORIES = 8;
+    private static final int FIRST_DAY = 19000;
+    private static final int DAYS = 5 * 365;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[]{1_000_000, 10_000_000, 100_000_000};
+        ColumnKernels scalar = new ScalarColumnKernels();
+        ColumnKernels vector = ColumnKernels.BEST instanceof ScalarColumnKernels ? null : ColumnKernels.BEST;
+        if (vector == null) {
+            System.out.println("Vector kernels unavailable; run with --add-modules jdk.incubator.vector");
+        }
+
+        for (int rows : sizes) {
+            ByteBuffer users = column(rows, Integer.BYTES);
+            ByteBuffer days = column(rows, Integer.BYTES);
+            ByteBuffer categories = column(rows, Integer.BYTES);
+            ByteBuffer amounts = column(rows, Long.BYTES);
+            Random random = new Random(rows);
+            for (int row = 0; row < rows; row++) {
+                // About one row in a hundred is a deleted or replaced one
+                users.putInt(row * Integer.BYTES, random.nextInt(100) == 0 ? ColumnStore.DELETED : random.nextInt(USERS));
+                days.putInt(row * Integer.BYTES, FIRST_DAY + random.nextInt(DAYS));
+                categories.putInt(row * Integer.BYTES, 1 + random.nextInt(CATEGORIES));
+                amounts.putLong(row * Long.BYTES, 100 + random.nextInt(100_000));
+            }
+
+            System.out.printf("%n%,d rows%n", rows);
+            System.out.printf("%-28s %12s %12s %8s%n", "query", "scalar ms", "vector ms", "speedup");
+            int[][] queries = {
+                // minUser, maxUser, fromDay, toDay, minCategory, maxCategory
+                {0, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE},
+                {0, Integer.MAX_VALUE, FIRST_DAY + 365, FIRST_DAY + 729, Integer.MIN_VALUE, Integer.MAX_VALUE},
+                {0, Integer.MAX_VALUE, FIRST_DAY + 90, FIRST_DAY + 180, 3, 3},
+                {42, 42, FIRST_DAY, FIRST_DAY + 364, Integer.MIN_VALUE, Integer.MAX_VALUE},
+            };
+            String[] names = {"all live rows", "one year", "one category, one quarter", "one user, one year"};
+            for (int q = 0; q < queries.length; q++) {
+                int[] query = queries[q];
+                long[] expected = new long[2];
+                double scalarMillis = time(scalar, users, days, categories, amounts, rows, query, expected);
+                if (vector == null) {
+                    System.out.printf("%-28s %12.2f %12s %8s%n", names[q], scalarMillis, "-", "-");
+                    continue;
+                }
+                long[] actual = new long[2];
+                double vectorMillis = time(vector, users, days, categories, amounts, rows, query, actual);
+                if (!Arrays.equals(expected, actual)) {
+                    throw new AssertionError(names[q] + ": scalar " + Arrays.toString(expected)
+                        + " but vector " + Arrays.toString(actual));
+                }
+                System.out.printf("%-28s %12.2f %12.2f %7.1fx%n", names[q], scalarMillis, vectorMillis,
+                    scalarMillis / vectorMillis);
+            }
+        }
+    }
+
+    // Median of RUNS timed runs after WARMUP untimed ones; the last result is left in result
+    private static double time(ColumnKernels kernels, ByteBuffer users, ByteBuffer days, ByteBuffer categories,
+                               ByteBuffer amounts, int rows, int[] query, long[] result) {
+        double[] millis = new double[RUNS];
+        for (int run = -WARMUP; run < RUNS; run++) {
+            Arrays.fill(result, 0);
+            long start = System.nanoTime();
+            kernels.countAndSum(users, days, categories, amounts, 0, rows,
+                query[0], query[1], query[2], query[3], query[4], query[5], result);
+            if (run >= 0) {
+                millis[run] = (System.nanoTime() - start) / 1e6;
+            }
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+
+    private static ByteBuffer column(int rows, int width) {
+        return ByteBuffer.allocateDirect(rows * width).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,72 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.*;
+
+/**
+ * Compares a vector of rows at a time against the filter bounds and adds
+ * the matching amounts through a lane mask, so there is no branch per row.
+ * Int columns are read with as many lanes as the preferred long species;
+ * the int mask is widened to a long vector of all-ones or zeros and ANDed
+ * with the amounts, which is far cheaper than casting the mask itself.
+ * Each bound check is one unsigned compare: lo &lt;= x &lt;= hi exactly when
+ * x - lo &lt;= hi - lo unsigned. Unfiltered days and categories are skipped.
+ *
+ * Requires jdk.incubator.vector; loaded by {@link ColumnKernels} only when
+ * it is present.
+ */
+final class VectorColumnKernels implements ColumnKernels {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+        VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    private final ColumnKernels tail = new ScalarColumnKernels();
+
+    VectorColumnKernels() {
+        if (LONGS.length() < 2) {
+            throw new UnsupportedOperationException("No vector width to gain from");
+        }
+    }
+
+    @Override
+    public void countAndSum(ByteBuffer users, ByteBuffer days, ByteBuffer categories, ByteBuffer amounts,
+                            int from, int to, int minUser, int maxUser, int fromDay, int toDay,
+                            int minCategory, int maxCategory, long[] result) {
+        if (minUser > maxUser || fromDay > toDay || minCategory > maxCategory) {
+            return;
+        }
+        boolean anyDay = fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE;
+        boolean anyCategory = minCategory == Integer.MIN_VALUE && maxCategory == Integer.MAX_VALUE;
+        int userSpan = maxUser - minUser;
+        int daySpan = toDay - fromDay;
+        int categorySpan = maxCategory - minCategory;
+
+        ByteOrder order = ByteOrder.nativeOrder();
+        IntVector none = IntVector.zero(INTS);
+        LongVector sums = LongVector.zero(LONGS);
+        LongVector counts = LongVector.zero(LONGS);
+        int end = from + INTS.loopBound(to - from);
+        int row = from;
+        for (; row < end; row += INTS.length()) {
+            VectorMask<Integer> matches = IntVector.fromByteBuffer(INTS, users, row * Integer.BYTES, order)
+                .sub(minUser).compare(VectorOperators.UNSIGNED_LE, userSpan);
+            if (!anyDay) {
+                matches = matches.and(IntVector.fromByteBuffer(INTS, days, row * Integer.BYTES, order)
+                    .sub(fromDay).compare(VectorOperators.UNSIGNED_LE, daySpan));
+            }
+            if (!anyCategory) {
+                matches = matches.and(IntVector.fromByteBuffer(INTS, categories, row * Integer.BYTES, order)
+                    .sub(minCategory).compare(VectorOperators.UNSIGNED_LE, categorySpan));
+            }
+            // -1 in matching lanes, 0 elsewhere
+            LongVector selected = (LongVector) none.blend(-1, matches).convertShape(VectorOperators.I2L, LONGS, 0);
+            sums = sums.add(LongVector.fromByteBuffer(LONGS, amounts, row * Long.BYTES, order).and(selected));
+            counts = counts.sub(selected);
+        }
+        result[0] += counts.reduceLanes(VectorOperators.ADD);
+        result[1] += sums.reduceLanes(VectorOperators.ADD);
+        tail.countAndSum(users, days, categories, amounts, row, to, minUser, maxUser, fromDay, toDay,
+            minCategory, maxCategory, result);
+    }
+}
@@ -57,10 +57,10 @@ public class CLIDashboard {
         System.out.println("══════════════════════════════════════════════════");
         
         // Show quick stats
-        double totalExpenses = expenseManager.getTotalExpenses();
+        long totalExpenses = expenseManager.getTotalExpenses();
         double monthlyBudget = user.getMonthlyBudget();
         
-        System.out.printf(" Total Expenses: $%.2f\n", totalExpenses);
+        System.out.printf(" Total Expenses: $%s\n", Money.format(totalExpenses));
         System.out.printf(" Monthly Budget: $%.2f\n", monthlyBudget);
         
         if (monthlyBudget > 0) {
@@ -97,7 +97,7 @@ public class CLIDashboard {
         System.out.print("\nExpense Title: ");
         String title = scanner.nextLine();
         
-        double amount = getDoubleInput("Amount: $");
+        long amount = getAmountInput("Amount: $");
         
         int categoryChoice = getIntInput("Category (1-" + categories.size() + "): ");
         if (categoryChoice < 1 || categoryChoice > categories.size()) {
@@ -143,45 +143,133 @@ public class CLIDashboard {
         System.out.println("          YOUR EXPENSES");
         System.out.println("═══════════════════════════════════");
         
-        List<Expense> expenses = expenseManager.getRecentExpenses(20);
+        ExpensePage page = expenseManager.getRecentPage(20);
         
-        if (expenses.isEmpty()) {
+        if (page.getExpenses().isEmpty()) {
             System.out.println("No expenses found!");
             return;
         }
         
+        while (true) {
+            printExpenseTable(page.getExpenses());
+            
+            System.out.println("\nTotal: $" + Money.format(expenseManager.getTotalExpenses()));
+            
+            // Options
+            System.out.println("\nOptions:");
+            System.out.println("1. Edit Expense");
+            System.out.println("2. Delete Expense");
+            System.out.println("3. Back to Menu");
+            System.out.println("4. Filter Expenses");
+            if (page.hasNext()) {
+                System.out.println("5. Older Expenses");
+            }
+            
+            int choice = getIntInput("Choose: ");
+            
+            if (choice == 1) {
+                editExpense();
+            } else if (choice == 2) {
+                deleteExpense();
+            } else if (choice == 4) {
+                filterExpenses();
+            } else if (choice == 5 && page.hasNext()) {
+                page = expenseManager.getRecentPage(page.getNext(), 20);
+                continue;
+            }
+            return;
+        }
+    }
+    
+    private void printExpenseTable(List<Expense> expenses) {
         System.out.printf("\n%-5s %-20s %-10s %-15s %-12s\n", 
             "ID", "Title", "Amount", "Category", "Date");
         System.out.println("─".repeat(70));
         
         for (Expense expense : expenses) {
-            System.out.printf("%-5d %-20s $%-9.2f %-15s %-12s\n",
+            System.out.printf("%-5d %-20s $%-9s %-15s %-12s\n",
                 expense.getId(),
                 expense.getTitle().length() > 20 ? 
                     expense.getTitle().substring(0, 17) + "..." : expense.getTitle(),
-                expense.getAmount(),
+                Money.format(expense.getAmount()),
                 expense.getCategory().getName().length() > 15 ?
                     expense.getCategory().getName().substring(0, 12) + "..." : 
                     expense.getCategory().getName(),
                 expense.getDate()
             );
         }
+    }
+    
+    private void filterExpenses() {
+        System.out.println("\nLeave any field blank to skip it.");
+        ExpenseQuery query = new ExpenseQuery()
+            .between(getOptionalDate("From date (YYYY-MM-DD): "), getOptionalDate("To date (YYYY-MM-DD): "))
+            .amountBetween(getOptionalAmount("Min amount: $"), getOptionalAmount("Max amount: $"));
+        
+        List<Category> categories = expenseManager.getAllCategories();
+        for (int i = 0; i < categories.size(); i++) {
+            System.out.printf("%d. %s  ", i + 1, categories.get(i).getName());
+        }
+        System.out.print("\nCategories (e.g. 1,3): ");
+        String categoryInput = scanner.nextLine().trim();
+        if (!categoryInput.isEmpty()) {
+            List<Integer> ids = new ArrayList<>();
+            for (String choice : categoryInput.split(",")) {
+                try {
+                    ids.add(categories.get(Integer.parseInt(choice.trim()) - 1).getId());
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    System.out.println("Ignoring invalid category: " + choice.trim());
+                }
+            }
+            query.inCategories(ids.stream().mapToInt(Integer::intValue).toArray());
+        }
         
-        System.out.println("\nTotal: $" + expenseManager.getTotalExpenses());
+        Expense.PaymentMethod[] methods = Expense.PaymentMethod.values();
+        for (int i = 0; i < methods.length; i++) {
+            System.out.printf("%d. %s  ", i + 1, methods[i]);
+        }
+        System.out.print("\nPayment methods (e.g. 2,3): ");
+        String methodInput = scanner.nextLine().trim();
+        if (!methodInput.isEmpty()) {
+            List<Expense.PaymentMethod> chosen = new ArrayList<>();
+            for (String choice : methodInput.split(",")) {
+                try {
+                    chosen.add(methods[Integer.parseInt(choice.trim()) - 1]);
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    System.out.println("Ignoring invalid payment method: " + choice.trim());
+                }
+            }
+            query.paidBy(chosen.toArray(new Expense.PaymentMethod[0]));
+        }
         
-        // Options
-        System.out.println("\nOptions:");
-        System.out.println("1. Edit Expense");
-        System.out.println("2. Delete Expense");
-        System.out.println("3. Back to Menu");
+        System.out.print("Recurring only? (y/n): ");
+        String recurring = scanner.nextLine().trim().toLowerCase();
+        if (recurring.equals("y") || recurring.equals("n")) {
+            query.recurring(recurring.equals("y"));
+        }
         
-        int choice = getIntInput("Choose: ");
+        System.out.print("Words in title or description (prefixes match): ");
+        query.containing(scanner.nextLine());
         
-        if (choice == 1) {
-            editExpense();
-        } else if (choice == 2) {
-            deleteExpense();
+        System.out.print("Sort by (1. Date  2. Amount  3. Title): ");
+        String sort = scanner.nextLine().trim();
+        ExpenseQuery.SortField field = sort.equals("2") ? ExpenseQuery.SortField.AMOUNT
+            : sort.equals("3") ? ExpenseQuery.SortField.TITLE : ExpenseQuery.SortField.DATE;
+        System.out.print("Ascending? (y/n): ");
+        query.sortBy(field, !scanner.nextLine().trim().equalsIgnoreCase("y"));
+        
+        List<Expense> matches = expenseManager.query(query);
+        if (matches.isEmpty()) {
+            System.out.println("No matching expenses!");
+            return;
+        }
+        
+        printExpenseTable(matches);
+        long total = 0;
+        for (Expense expense : matches) {
+            total += expense.getAmount();
         }
+        System.out.printf("\n%d matching, Total: $%s\n", matches.size(), Money.format(total));
     }
     
     private void editExpense() {
@@ -228,15 +316,18 @@ public class CLIDashboard {
             case 3:
                 showDailyReport();
                 break;
+            case 4:
+                showTrendsReport();
+                break;
             default:
                 System.out.println("Coming soon...");
         }
     }
     
     private void showCategoryReport() {
-        Map<Category, Double> categoryExpenses = expenseManager.getCategoryWiseExpenses();
+        Report<Category> report = expenseManager.getSummary(null, null, Report.Grouping.CATEGORY);
         
-        if (categoryExpenses.isEmpty()) {
+        if (report.isEmpty()) {
             System.out.println("No expenses to show!");
             return;
         }
@@ -244,18 +335,15 @@ public class CLIDashboard {
         System.out.println("\nCATEGORY-WISE EXPENSES:");
         System.out.println("─".repeat(50));
         
-        double total = 0;
-        for (Map.Entry<Category, Double> entry : categoryExpenses.entrySet()) {
-            double amount = entry.getValue();
-            total += amount;
-            double percentage = (amount / expenseManager.getTotalExpenses()) * 100;
-            
-            System.out.printf("%-20s: $%-8.2f (%.1f%%)\n",
-                entry.getKey().getName(), amount, percentage);
+        long total = report.getOverall().getSum();
+        for (Map.Entry<Category, Report.GroupStats> entry : report.getGroups().entrySet()) {
+            Report.GroupStats stats = entry.getValue();
+            System.out.printf("%-20s: $%-8s (%.1f%%)\n",
+                entry.getKey().getName(), Money.format(stats.getSum()), stats.getPercentageOf(total));
         }
         
         System.out.println("─".repeat(50));
-        System.out.printf("TOTAL: $%.2f\n", total);
+        System.out.printf("TOTAL: $%s\n", Money.format(total));
     }
     
     private void showMonthlyReport() {
@@ -263,42 +351,68 @@ public class CLIDashboard {
         int year = now.getYear();
         int month = now.getMonthValue();
         
-        double monthlyTotal = expenseManager.getMonthlyTotal(year, month);
-        List<Expense> monthlyExpenses = expenseManager.getExpensesByMonth(year, month);
+        Report.GroupStats stats = expenseManager.getMonthlyReport(year, month, Report.Grouping.DAY)
+            .getOverall();
         
         System.out.printf("\nMONTHLY REPORT: %d-%02d\n", year, month);
         System.out.println("─".repeat(50));
-        System.out.printf("Total Expenses: $%.2f\n", monthlyTotal);
-        System.out.printf("Number of Transactions: %d\n", monthlyExpenses.size());
-        System.out.printf("Average Daily Expense: $%.2f\n", 
-            monthlyTotal / now.getDayOfMonth());
-        
-        if (!monthlyExpenses.isEmpty()) {
-            Expense highest = monthlyExpenses.stream()
-                .max(Comparator.comparing(Expense::getAmount))
-                .orElse(null);
-            Expense lowest = monthlyExpenses.stream()
-                .min(Comparator.comparing(Expense::getAmount))
-                .orElse(null);
+        System.out.printf("Total Expenses: $%s\n", Money.format(stats.getSum()));
+        System.out.printf("Number of Transactions: %d\n", stats.getCount());
+        System.out.printf("Average Daily Expense: $%s\n", 
+            Money.format(Math.round((double) stats.getSum() / now.getDayOfMonth())));
+        
+        if (stats.getCount() > 0) {
+            Expense highest = stats.getArgMax();
+            Expense lowest = stats.getArgMin();
             
-            System.out.printf("Highest Expense: %s ($%.2f)\n", 
-                highest.getTitle(), highest.getAmount());
-            System.out.printf("Lowest Expense: %s ($%.2f)\n", 
-                lowest.getTitle(), lowest.getAmount());
+            System.out.printf("Highest Expense: %s ($%s)\n", 
+                highest.getTitle(), Money.format(highest.getAmount()));
+            System.out.printf("Lowest Expense: %s ($%s)\n", 
+                lowest.getTitle(), Money.format(lowest.getAmount()));
         }
     }
     
     private void showDailyReport() {
         LocalDate now = LocalDate.now();
-        Map<String, Double> dailyExpenses = expenseManager.getDailyExpenses(
-            now.getYear(), now.getMonthValue());
+        long[] dailyTotals = expenseManager.getDailyTotals(now.getYear(), now.getMonthValue());
         
         System.out.printf("\nDAILY EXPENSES: %d-%02d\n", now.getYear(), now.getMonthValue());
         System.out.println("─".repeat(50));
         
-        for (Map.Entry<String, Double> entry : dailyExpenses.entrySet()) {
-            System.out.printf("%s: $%.2f\n", entry.getKey(), entry.getValue());
+        for (int day = 0; day < dailyTotals.length; day++) {
+            if (dailyTotals[day] != 0) {
+                System.out.printf("%s: $%s\n", now.withDayOfMonth(day + 1), Money.format(dailyTotals[day]));
+            }
+        }
+    }
+    
+    private void showTrendsReport() {
+        int months = getIntInput("Number of months: ");
+        if (months < 1 || months > ExpenseManager.MAX_TREND_MONTHS) {
+            System.out.println("❌ Enter between 1 and " + ExpenseManager.MAX_TREND_MONTHS + " months.");
+            return;
+        }
+        
+        Trend trend = expenseManager.getTrend(months);
+        long[] movingAverage = trend.getMovingAverage(3);
+        
+        System.out.printf("\nSPENDING TRENDS: LAST %d MONTHS\n", months);
+        System.out.println("─".repeat(70));
+        System.out.printf("%-9s %12s %6s %10s %13s %12s\n",
+            "Month", "Total", "Count", "Avg/Day", "Change", "3-Mo Avg");
+        
+        for (int i = 0; i < trend.size(); i++) {
+            long change = trend.getChange(i);
+            System.out.printf("%-9s %12s %6d %10s %13s %12s\n",
+                trend.getMonth(i), "$" + Money.format(trend.getTotal(i)), trend.getCount(i),
+                "$" + Money.format(trend.getAveragePerDay(i)),
+                i == 0 ? "" : (change >= 0 ? "+$" : "-$") + Money.format(Math.abs(change)),
+                "$" + Money.format(movingAverage[i]));
         }
+        
+        System.out.println("─".repeat(70));
+        System.out.printf("TOTAL: $%s in %d transactions, $%s per month\n",
+            Money.format(trend.getGrandTotal()), trend.getTotalCount(), Money.format(trend.getMonthlyAverage()));
     }
     
     private void manageCategories() {
@@ -324,7 +438,7 @@ public class CLIDashboard {
             int catChoice = getIntInput("Select category (1-" + categories.size() + "): ");
             if (catChoice >= 1 && catChoice <= categories.size()) {
                 double budget = getDoubleInput("Enter budget limit: $");
-                categories.get(catChoice - 1).setBudgetLimit(budget);
+                expenseManager.updateCategoryBudget(categories.get(catChoice - 1).getId(), budget);
                 System.out.println("✅ Budget limit updated!");
             }
         }
@@ -417,6 +531,48 @@ public class CLIDashboard {
         }
     }
     
+    private long getAmountInput(String prompt) {
+        while (true) {
+            try {
+                System.out.print(prompt);
+                return Money.parse(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter a valid amount.");
+            }
+        }
+    }
+    
+    // Null when left blank
+    private LocalDate getOptionalDate(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(input);
+            } catch (Exception e) {
+                System.out.println("Invalid date format!");
+            }
+        }
+    }
+    
+    private Long getOptionalAmount(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                return Money.parse(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter a valid amount.");
+            }
+        }
+    }
+    
     private double getDoubleInput(String prompt) {
         while (true) {
             try {
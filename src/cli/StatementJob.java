@@ -0,0 +1,37 @@
+package cli;
+
+import core.MonthlyStatements;
+import java.io.*;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Writes monthly statements for all users, for running from a scheduler:
+ *
+ * <pre>java cli.StatementJob [yyyy-MM] [output file]</pre>
+ *
+ * The month defaults to the previous one and the output to stdout.
+ */
+public class StatementJob {
+    public static void main(String[] args) {
+        YearMonth month;
+        try {
+            month = args.length > 0 ? YearMonth.parse(args[0]) : YearMonth.now().minusMonths(1);
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid month, expected yyyy-MM: " + args[0]);
+            System.exit(1);
+            return;
+        }
+
+        try (Writer out = new BufferedWriter(args.length > 1
+                ? new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8")
+                : new OutputStreamWriter(System.out, "UTF-8"))) {
+            int statements = new MonthlyStatements().write(month, out);
+            System.err.println("Wrote " + statements + " statements for " + month);
+        } catch (IOException e) {
+            System.err.println("Error writing statements: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,57 @@
+package core;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Crash-safe whole-file replacement. Content is written to a sibling temp
+ * file, forced to disk and then renamed over the target, so readers see
+ * either the old file or the complete new one, never a truncated mix.
+ */
+final class AtomicFile {
+
+    interface Writer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFile() {
+    }
+
+    public static void write(File target, Writer writer) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            BufferedOutputStream out = new BufferedOutputStream(fileOut);
+            writer.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // The temp file is closed below, after it has been forced
+                    flush();
+                }
+            });
+            out.flush();
+            fileOut.getChannel().force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        Files.move(temp.toPath(), target.toPath(),
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    // Makes the rename itself durable; not every platform allows opening a directory
+    private static void forceDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+}
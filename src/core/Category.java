@@ -3,6 +3,8 @@ package core;
 import java.io.Serializable;
 
 public class Category implements Serializable {
+    private static final long serialVersionUID = 1824410107571683120L;
+    
     private int id;
     private String name;
     private String description;
@@ -45,6 +47,25 @@ public class Category implements Serializable {
     public String getColorCode() { return colorCode; }
     public void setColorCode(String colorCode) { this.colorCode = colorCode; }
     
+    // Categories are identified by id, so copies loaded at different times group together
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Category)) return false;
+        return id == ((Category) o).id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+    
+    Category copy() {
+        Category copy = new Category(id, name, description, colorCode);
+        copy.budgetLimit = budgetLimit;
+        return copy;
+    }
+    
     @Override
     public String toString() {
         return String.format("%s (Limit: $%.2f)", name, budgetLimit);
@@ -0,0 +1,80 @@
+package core;
+
+import java.util.*;
+
+/**
+ * Immutable, array-indexed lookup of categories by id. Expenses store only
+ * a category id and resolve it here, so a category is held once in memory
+ * and editing one never touches the expenses that use it.
+ *
+ * Database installs a new registry whenever the categories change; readers
+ * always see a complete registry through {@link #current()}.
+ */
+public final class CategoryRegistry {
+    private static volatile CategoryRegistry current = new CategoryRegistry(
+        Arrays.asList(Category.DEFAULT_CATEGORIES));
+
+    private final Category[] byId;
+    private final List<Category> categories;
+
+    CategoryRegistry(List<Category> categories) {
+        int maxId = 0;
+        for (Category category : categories) {
+            maxId = Math.max(maxId, category.getId());
+        }
+        this.byId = new Category[maxId + 1];
+        for (Category category : categories) {
+            byId[category.getId()] = category;
+        }
+        this.categories = Collections.unmodifiableList(new ArrayList<>(categories));
+    }
+
+    public static CategoryRegistry current() {
+        return current;
+    }
+
+    static void install(CategoryRegistry registry) {
+        current = registry;
+    }
+
+    /** @return the category, or null if no category has this id */
+    public Category get(int id) {
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    /** Like {@link #get(int)} but never null, for display code. */
+    public Category resolve(int id) {
+        Category category = get(id);
+        return category != null ? category : new Category(id, "Unknown", "", "#8A8A8A");
+    }
+
+    public List<Category> all() {
+        return categories;
+    }
+
+    public int maxId() {
+        return byId.length - 1;
+    }
+
+    public boolean isEmpty() {
+        return categories.isEmpty();
+    }
+
+    /** Returns a registry with the given category added or replaced. */
+    CategoryRegistry with(Category category) {
+        List<Category> updated = new ArrayList<>(categories.size() + 1);
+        boolean replaced = false;
+        for (Category existing : categories) {
+            if (existing.getId() == category.getId()) {
+                updated.add(category);
+                replaced = true;
+            } else {
+                updated.add(existing);
+            }
+        }
+        if (!replaced) {
+            updated.add(category);
+        }
+        return new CategoryRegistry(updated);
+    }
+}
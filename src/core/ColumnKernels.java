@@ -0,0 +1,78 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Filtered count-and-sum over a range of column store rows. The vector
+ * implementation needs the incubating jdk.incubator.vector module, so it
+ * lives in its own source root, src-vector, built only where the module is
+ * available, and is loaded reflectively; without it, without the module
+ * at run time, or on hardware with no useful vector width, the scalar
+ * loop is used. src builds on its own; to add the vector kernels:
+ *
+ * <pre>
+ * javac -encoding UTF-8 -d out $(find src -name '*.java')
+ * javac --add-modules jdk.incubator.vector -cp out -d out src-vector/core/*.java
+ * java --add-modules jdk.incubator.vector -cp out Main
+ * </pre>
+ */
+interface ColumnKernels {
+    /** Kernels for this JVM: vectorized when available, scalar otherwise. */
+    ColumnKernels BEST = load();
+
+    /**
+     * Adds to result[0] and result[1] the count and sum of the amounts of
+     * rows in [from, to) whose user, epoch day and category each lie within
+     * the given inclusive bounds. Column buffers are in native byte order
+     * and must not be shared with other threads.
+     */
+    void countAndSum(ByteBuffer users, ByteBuffer days, ByteBuffer categories, ByteBuffer amounts,
+                     int from, int to, int minUser, int maxUser, int fromDay, int toDay,
+                     int minCategory, int maxCategory, long[] result);
+
+    private static ColumnKernels load() {
+        ColumnKernels scalar = new ScalarColumnKernels();
+        try {
+            ColumnKernels vector = (ColumnKernels) Class.forName("core.VectorColumnKernels")
+                .getDeclaredConstructor().newInstance();
+            // Vector API calls link lazily, so a JDK whose incubating API has moved on fails here, not mid-query
+            return agree(vector, scalar) ? vector : scalar;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return scalar;
+        }
+    }
+
+    // Runs both kernels over a few direct rows, like the mapped columns, spanning
+    // whole vectors and a tail, with and without each bound
+    private static boolean agree(ColumnKernels vector, ColumnKernels scalar) {
+        int rows = 67;
+        ByteBuffer users = ByteBuffer.allocateDirect(rows * Integer.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer days = ByteBuffer.allocateDirect(rows * Integer.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer categories = ByteBuffer.allocateDirect(rows * Integer.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer amounts = ByteBuffer.allocateDirect(rows * Long.BYTES).order(ByteOrder.nativeOrder());
+        for (int row = 0; row < rows; row++) {
+            users.putInt(row * Integer.BYTES, row % 3 - 1);
+            days.putInt(row * Integer.BYTES, row % 11);
+            categories.putInt(row * Integer.BYTES, row % 5);
+            amounts.putLong(row * Long.BYTES, row * 7L);
+        }
+        int[][] bounds = {
+            {0, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE},
+            {1, 1, 2, 8, 1, 3},
+        };
+        for (int[] bound : bounds) {
+            long[] expected = new long[2];
+            long[] actual = new long[2];
+            scalar.countAndSum(users, days, categories, amounts, 0, rows,
+                bound[0], bound[1], bound[2], bound[3], bound[4], bound[5], expected);
+            vector.countAndSum(users, days, categories, amounts, 0, rows,
+                bound[0], bound[1], bound[2], bound[3], bound[4], bound[5], actual);
+            if (!Arrays.equals(expected, actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
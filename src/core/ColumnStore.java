@@ -0,0 +1,759 @@
+package core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+
+/**
+ * Column-oriented copy of every user's expenses, kept in memory-mapped
+ * files under data/columns/. Each attribute lives in its own primitive
+ * column (one file per column) indexed by row number, so aggregations are
+ * tight loops over contiguous memory and never materialize Expense objects.
+ *
+ * Rows are append-only. An update appends a new row and a delete marks the
+ * old row's user column as DELETED. Once dead rows outnumber live ones, the
+ * live rows are copied into a fresh generation of column files and the old
+ * files are dropped, so churn does not grow the store without bound. The
+ * store is derived data: when it is missing or was not closed cleanly,
+ * Database rebuilds it from the partitions.
+ *
+ * Appends and deletes take the write lock, scans the read lock. Writes are
+ * a handful of buffer puts, so the lock is held only briefly.
+ *
+ * Several processes may map the same files. Writers serialize on a slot
+ * of the DataDirectoryLock, and the shared row count in columns.meta is
+ * bumped only after a row is complete, so each process catches up by
+ * indexing rows past its own count before reading or writing. Deletes bump
+ * a shared counter too, so other processes refresh their live-row bitmaps.
+ * The generation is published in the same word as the row count; a process
+ * that sees a new one maps the new files and reindexes, while its scans
+ * already running finish on the old mapping.
+ *
+ * Rows are also indexed in memory by compressed bitmaps: the live rows of
+ * each user, and all rows per category id and per payment method. Filters
+ * on those attributes are bitmap ANDs and ORs, and counts are bitmap
+ * cardinalities.
+ *
+ * Scans across all users, or across the span a dense user's rows occupy,
+ * split the rows into ranges aggregated in parallel on the common
+ * fork-join pool, each range into its own partial result, merged as the
+ * ranges join. Filtered counts and sums over a span run on
+ * {@link ColumnKernels}, vectorized when the JVM has the Vector API.
+ */
+class ColumnStore {
+    static final String COLUMN_DIR = "data/columns";
+    static final int DELETED = -1;
+    // Matches every category in countAndSum
+    static final int ANY = -2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Row count in the low half, generation of the column files in the high half
+    private static final int META_ROW_COUNT = 0;
+    private static final int META_CLEAN = 8;
+    private static final int META_FORMAT = 12;
+    private static final int META_DELETES = 16;
+    private static final int META_SIZE = 24;
+    // Rows per parallel scan range; below this, splitting costs more than it saves
+    private static final int PARALLEL_GRAIN = 1 << 16;
+    // A user's span of rows is scanned whole when at most this many rows per row of theirs
+    private static final int DENSE_SPAN = 4;
+    // Bumped when a column's encoding or the meta layout changes; 3 adds the delete counter
+    private static final int FORMAT = 3;
+
+    private final File dir = new File(COLUMN_DIR);
+    private final File userDictionaryFile = new File(COLUMN_DIR, "users.dict");
+
+    private MappedByteBuffer meta;
+    private Column ids, users, days, categories, payments, amounts;
+    private int rowCount;
+    private int capacity;
+    // Which column files are mapped; bumped by each compaction
+    private int generation;
+    // Deletes seen so far, compared with the shared counter to notice other processes' deletes
+    private long deleteCount;
+
+    // Row bitmaps; category and payment bitmaps keep deleted rows, so they are always ANDed with a user's
+    private final List<RowBitmap> liveRowsByUser = new ArrayList<>();
+    private final List<RowBitmap> rowsByCategory = new ArrayList<>();
+    private final RowBitmap[] rowsByPayment = new RowBitmap[Expense.PaymentMethod.values().length];
+
+    private final Map<String, Integer> userOrdinals = new HashMap<>();
+    private final RowIndex rowIndex = new RowIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final DataDirectoryLock directoryLock;
+    private final int lockSlot;
+
+    ColumnStore(DataDirectoryLock directoryLock, int lockSlot) {
+        this.directoryLock = directoryLock;
+        this.lockSlot = lockSlot;
+        clearBitmaps();
+    }
+
+    /**
+     * Maps the column files, creating them if needed. Only a process that
+     * is alone on the data directory may decide the store needs a rebuild;
+     * otherwise another live process is maintaining it.
+     * @return true if the store has to be rebuilt from the partitions
+     */
+    public boolean open(boolean soleProcess) throws IOException {
+        boolean existed = new File(dir, "columns.meta").exists();
+        dir.mkdirs();
+
+        try (FileChannel channel = FileChannel.open(new File(dir, "columns.meta").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            meta = channel.map(FileChannel.MapMode.READ_WRITE, 0, META_SIZE);
+        }
+        boolean clean = existed && meta.getInt(META_FORMAT) == FORMAT
+            && (!soleProcess || meta.getInt(META_CLEAN) == 1);
+        rowCount = clean ? sharedRowCount() : 0;
+        generation = sharedGeneration();
+        deleteCount = meta.getLong(META_DELETES);
+
+        capacity = capacityFor(rowCount);
+        mapColumns();
+
+        if (!clean) {
+            clear();
+            return true;
+        }
+
+        loadUserDictionary();
+        indexRows(0, rowCount);
+        markDirty();
+        return false;
+    }
+
+    /** Drops all rows and the user dictionary. Only safe while no other process is running. */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowCount = 0;
+            rowIndex.clear();
+            userOrdinals.clear();
+            clearBitmaps();
+            userDictionaryFile.delete();
+            publishRowCount();
+            meta.putInt(META_FORMAT, FORMAT);
+            markDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the columns. The last process to close marks the store clean;
+     * while others still run it stays dirty in case one of them crashes.
+     */
+    public void close(boolean markClean) {
+        lock.writeLock().lock();
+        try {
+            for (Column column : allColumns()) {
+                column.buffer.force();
+            }
+            if (markClean) {
+                meta.putInt(META_CLEAN, 1);
+            }
+            meta.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mutations
+
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    public void append(Expense expense) {
+        lock.writeLock().lock();
+        try (FileLock fileLock = directoryLock.lock(lockSlot)) {
+            catchUp();
+            appendRow(expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    public void update(Expense expense) {
+        lock.writeLock().lock();
+        try (FileLock fileLock = directoryLock.lock(lockSlot)) {
+            catchUp();
+            deleteRow(expense.getId(), expense.getUsername());
+            appendRow(expense);
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    public void delete(int expenseId, String username) {
+        lock.writeLock().lock();
+        try (FileLock fileLock = directoryLock.lock(lockSlot)) {
+            catchUp();
+            deleteRow(expenseId, username);
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Callers hold the write lock and the directory slot
+    private void appendRow(Expense expense) {
+        int user = ordinalFor(expense.getUsername());
+        ensureCapacity(rowCount + 1);
+
+        int row = rowCount;
+        ids.buffer.putInt(row * Integer.BYTES, expense.getId());
+        users.buffer.putInt(row * Integer.BYTES, user);
+        days.buffer.putInt(row * Integer.BYTES, (int) expense.getDate().toEpochDay());
+        categories.buffer.putInt(row * Integer.BYTES, expense.getCategoryId());
+        payments.buffer.put(row, (byte) expense.getPaymentMethod().ordinal());
+        amounts.buffer.putLong(row * Long.BYTES, expense.getAmount());
+
+        rowIndex.put(key(user, expense.getId()), row);
+        indexBitmaps(row, user);
+        rowCount++;
+        // Published last so other processes never index a partial row
+        publishRowCount();
+    }
+
+    private void deleteRow(int expenseId, String username) {
+        Integer user = userOrdinals.get(username);
+        if (user == null) {
+            return;
+        }
+        int row = rowIndex.remove(key(user, expenseId));
+        if (row != RowIndex.ABSENT) {
+            users.buffer.putInt(row * Integer.BYTES, DELETED);
+            liveRowsByUser.get(user).remove(row);
+            deleteCount = meta.getLong(META_DELETES) + 1;
+            meta.putLong(META_DELETES, deleteCount);
+        }
+    }
+
+    // Copies the live rows into the next generation of column files once
+    // dead rows outnumber them, so the copy's cost is spread over at least
+    // as many deletes. Callers hold the write lock and the directory slot.
+    private void compactIfNeeded() throws IOException {
+        int live = rowIndex.size();
+        if (rowCount - live <= Math.max(live, INITIAL_CAPACITY)) {
+            return;
+        }
+        List<Column> old = allColumns();
+        ByteBuffer oldUsers = users.buffer;
+        generation++;
+        capacity = capacityFor(live);
+        mapColumns();
+        List<Column> fresh = allColumns();
+
+        int compacted = 0;
+        int row = 0;
+        while (row < rowCount) {
+            if (oldUsers.getInt(row * Integer.BYTES) == DELETED) {
+                row++;
+                continue;
+            }
+            // Copy each run of live rows in one go
+            int end = row + 1;
+            while (end < rowCount && oldUsers.getInt(end * Integer.BYTES) != DELETED) {
+                end++;
+            }
+            for (int i = 0; i < fresh.size(); i++) {
+                fresh.get(i).copy(old.get(i), row, compacted, end - row);
+            }
+            compacted += end - row;
+            row = end;
+        }
+        for (Column column : fresh) {
+            column.buffer.force();
+        }
+        rowCount = compacted;
+        publishRowCount();
+        meta.force();
+        // Processes still scanning the old files keep their mappings
+        for (Column column : old) {
+            column.file.delete();
+        }
+        reindex();
+    }
+
+    // Scans
+
+    public int userOrdinal(String username) {
+        beginRead();
+        try {
+            return userOrdinals.getOrDefault(username, DELETED);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count and sum, as {count, sum}, of the user's live rows in the
+     * category (or ANY) with fromDay &lt;= epoch day &lt;= toDay. Where the
+     * user's rows are dense in the span they occupy, as when one user owns
+     * most of the store, the span is scanned in parallel ranges with
+     * {@link ColumnKernels#BEST}; otherwise only the user's rows are read.
+     */
+    public long[] countAndSum(int user, int categoryId, int fromDay, int toDay) {
+        if (user < 0 || (categoryId < 0 && categoryId != ANY)) {
+            return new long[2];
+        }
+        beginRead();
+        try {
+            if (user >= liveRowsByUser.size() || (categoryId != ANY && categoryId >= rowsByCategory.size())) {
+                return new long[2];
+            }
+            RowBitmap rows = liveRowsByUser.get(user);
+            int first = rows.next(0);
+            int end = rows.last() + 1;
+            if (first < 0 || end - first > (long) rows.cardinality() * DENSE_SPAN) {
+                if (categoryId != ANY) {
+                    rows = rows.and(rowsByCategory.get(categoryId));
+                }
+                return countAndSumRows(rows, fromDay, toDay, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            int minCategory = categoryId == ANY ? Integer.MIN_VALUE : categoryId;
+            int maxCategory = categoryId == ANY ? Integer.MAX_VALUE : categoryId;
+            return scan(first, end, PARALLEL_GRAIN, (from, to) -> {
+                long[] result = new long[2];
+                ColumnKernels.BEST.countAndSum(users.view(), days.view(), categories.view(), amounts.view(),
+                    from, to, user, user, fromDay, toDay, minCategory, maxCategory, result);
+                return result;
+            }, (left, right) -> {
+                left[0] += right[0];
+                left[1] += right[1];
+                return left;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The user's live rows, narrowed to the given categories and payment
+     * methods when those are non-null. Only bitmaps are touched, so the
+     * result's cardinality is a count without reading any rows.
+     */
+    public RowBitmap select(int user, BitSet categoryIds, Set<Expense.PaymentMethod> paymentMethods) {
+        beginRead();
+        try {
+            if (user < 0 || user >= liveRowsByUser.size()) {
+                return new RowBitmap();
+            }
+            RowBitmap rows = selectRows(user, categoryIds, paymentMethods);
+            return rows == liveRowsByUser.get(user) ? rows.copy() : rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count and sum, as {count, sum}, of the rows {@link #select} picks
+     * with fromDay &lt;= epoch day &lt;= toDay and minAmount &lt;= amount &lt;= maxAmount.
+     * Only the selected rows are read, under the same lock as the selection
+     * since a compaction renumbers rows.
+     */
+    public long[] countAndSum(int user, BitSet categoryIds, Set<Expense.PaymentMethod> paymentMethods,
+            int fromDay, int toDay, long minAmount, long maxAmount) {
+        beginRead();
+        try {
+            if (user < 0 || user >= liveRowsByUser.size()) {
+                return new long[2];
+            }
+            return countAndSumRows(selectRows(user, categoryIds, paymentMethods),
+                fromDay, toDay, minAmount, maxAmount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Callers hold the read lock and have checked the user ordinal
+    private RowBitmap selectRows(int user, BitSet categoryIds, Set<Expense.PaymentMethod> paymentMethods) {
+        // Every intermediate stays within the user's rows, however large the filter bitmaps are
+        RowBitmap rows = liveRowsByUser.get(user);
+        if (categoryIds != null) {
+            RowBitmap any = new RowBitmap();
+            for (int id = categoryIds.nextSetBit(0); id >= 0 && id < rowsByCategory.size();
+                    id = categoryIds.nextSetBit(id + 1)) {
+                any = any.or(rows.and(rowsByCategory.get(id)));
+            }
+            rows = any;
+        }
+        if (paymentMethods != null) {
+            RowBitmap any = new RowBitmap();
+            for (Expense.PaymentMethod method : paymentMethods) {
+                any = any.or(rows.and(rowsByPayment[method.ordinal()]));
+            }
+            rows = any;
+        }
+        return rows;
+    }
+
+    // Callers hold the read lock
+    private long[] countAndSumRows(RowBitmap rows, int fromDay, int toDay, long minAmount, long maxAmount) {
+        long count = 0;
+        long total = 0;
+        for (int row = rows.next(0); row >= 0 && row < rowCount; row = rows.next(row + 1)) {
+            int day = days.buffer.getInt(row * Integer.BYTES);
+            long amount = amounts.buffer.getLong(row * Long.BYTES);
+            if (day >= fromDay && day <= toDay && amount >= minAmount && amount <= maxAmount) {
+                count++;
+                total += amount;
+            }
+        }
+        return new long[]{count, total};
+    }
+
+    /**
+     * Count and sum of the live rows dated within [fromDay, toDay], for
+     * every user and category, in one parallel pass over all rows.
+     */
+    public Totals totalsByUserAndCategory(int fromDay, int toDay) {
+        beginRead();
+        try {
+            String[] usernames = new String[userOrdinals.size()];
+            for (Map.Entry<String, Integer> entry : userOrdinals.entrySet()) {
+                usernames[entry.getValue()] = entry.getKey();
+            }
+            int userCount = usernames.length;
+            int categoryCount = rowsByCategory.size();
+            // A partial is a dense users x categories table, so split only into as many ranges
+            // as there are workers: merging costs a table per range whatever its row count
+            int workers = ForkJoinPool.getCommonPoolParallelism();
+            int grain = Math.max(PARALLEL_GRAIN, (int) (((long) rowCount + workers - 1) / workers));
+            Totals totals = scan(0, rowCount, grain, (from, to) -> {
+                Totals range = new Totals(userCount, categoryCount);
+                ByteBuffer userColumn = users.view();
+                ByteBuffer dayColumn = days.view();
+                ByteBuffer categoryColumn = categories.view();
+                ByteBuffer amountColumn = amounts.view();
+                for (int row = from; row < to; row++) {
+                    int user = userColumn.getInt(row * Integer.BYTES);
+                    int day = dayColumn.getInt(row * Integer.BYTES);
+                    int category = categoryColumn.getInt(row * Integer.BYTES);
+                    if (user >= 0 && user < userCount && category >= 0 && category < categoryCount
+                            && day >= fromDay && day <= toDay) {
+                        int cell = user * categoryCount + category;
+                        range.counts[cell]++;
+                        range.sums[cell] += amountColumn.getLong(row * Long.BYTES);
+                    }
+                }
+                return range;
+            }, (left, right) -> {
+                left.merge(right);
+                return left;
+            });
+            totals.usernames = usernames;
+            return totals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Counts and sums per (user ordinal, category id), flattened user-major. */
+    static final class Totals {
+        final int categoryCount;
+        final long[] counts;
+        final long[] sums;
+        // Indexed by user ordinal
+        String[] usernames;
+
+        Totals(int userCount, int categoryCount) {
+            this.categoryCount = categoryCount;
+            this.counts = new long[userCount * categoryCount];
+            this.sums = new long[userCount * categoryCount];
+        }
+
+        void merge(Totals other) {
+            for (int i = 0; i < sums.length; i++) {
+                counts[i] += other.counts[i];
+                sums[i] += other.sums[i];
+            }
+        }
+    }
+
+    // One range of rows, scanned into a fresh partial result
+    private interface RangeScan<T> {
+        T apply(int from, int to);
+    }
+
+    // Callers hold the read lock until this returns, so no writer can move
+    // the rows or remap the columns while ranges are scanned. Scans must
+    // read through their own buffer views: buffers are not safe for
+    // concurrent use.
+    private <T> T scan(int from, int to, int grain, RangeScan<T> range, BinaryOperator<T> merge) {
+        return ForkJoinPool.commonPool().invoke(new ScanTask<>(from, to, grain, range, merge));
+    }
+
+    // Splits the row range in halves down to grain rows; the left half's
+    // partial absorbs the right's as they join
+    private static final class ScanTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final RangeScan<T> range;
+        private final BinaryOperator<T> merge;
+
+        ScanTask(int from, int to, int grain, RangeScan<T> range, BinaryOperator<T> merge) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.range = range;
+            this.merge = merge;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= grain) {
+                return range.apply(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<T> right = new ScanTask<>(middle, to, grain, range, merge);
+            right.fork();
+            T left = new ScanTask<>(from, middle, grain, range, merge).compute();
+            return merge.apply(left, right.join());
+        }
+    }
+
+    // Internals
+
+    // Takes the read lock, first indexing rows other processes appended or deleted
+    private void beginRead() {
+        if (meta.getLong(META_ROW_COUNT) != packedRowCount() || meta.getLong(META_DELETES) != deleteCount) {
+            lock.writeLock().lock();
+            try {
+                catchUp();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        lock.readLock().lock();
+    }
+
+    // Callers hold the write lock
+    private void catchUp() throws IOException {
+        long shared = meta.getLong(META_ROW_COUNT);
+        int sharedCount = (int) shared;
+        long sharedDeletes = meta.getLong(META_DELETES);
+        if ((int) (shared >>> 32) != generation) {
+            // Another process compacted the rows into new files
+            generation = (int) (shared >>> 32);
+            capacity = capacityFor(sharedCount);
+            mapColumns();
+            loadUserDictionary();
+            rowCount = sharedCount;
+            deleteCount = sharedDeletes;
+            reindex();
+            return;
+        }
+        if (sharedCount != rowCount) {
+            loadUserDictionary();
+            ensureCapacity(sharedCount);
+            indexRows(rowCount, sharedCount);
+            rowCount = sharedCount;
+        }
+        if (sharedDeletes != deleteCount) {
+            // Deleted rows are not listed anywhere, so rescan the user column
+            reindex();
+            deleteCount = sharedDeletes;
+        }
+    }
+
+    private void reindex() {
+        rowIndex.clear();
+        clearBitmaps();
+        indexRows(0, rowCount);
+    }
+
+    private void indexRows(int from, int to) {
+        for (int row = from; row < to; row++) {
+            int user = users.buffer.getInt(row * Integer.BYTES);
+            if (user != DELETED) {
+                int previous = rowIndex.put(key(user, ids.buffer.getInt(row * Integer.BYTES)), row);
+                // Another process updated this expense; its old row is gone
+                if (previous != RowIndex.ABSENT && previous < row) {
+                    liveRowsByUser.get(user).remove(previous);
+                }
+            }
+            indexBitmaps(row, user);
+        }
+    }
+
+    private void indexBitmaps(int row, int user) {
+        if (user != DELETED) {
+            bitmapFor(liveRowsByUser, user).add(row);
+        }
+        int category = categories.buffer.getInt(row * Integer.BYTES);
+        if (category >= 0) {
+            bitmapFor(rowsByCategory, category).add(row);
+        }
+        int payment = payments.buffer.get(row);
+        if (payment >= 0 && payment < rowsByPayment.length) {
+            rowsByPayment[payment].add(row);
+        }
+    }
+
+    private static RowBitmap bitmapFor(List<RowBitmap> bitmaps, int ordinal) {
+        while (bitmaps.size() <= ordinal) {
+            bitmaps.add(new RowBitmap());
+        }
+        return bitmaps.get(ordinal);
+    }
+
+    private void clearBitmaps() {
+        liveRowsByUser.clear();
+        rowsByCategory.clear();
+        for (int i = 0; i < rowsByPayment.length; i++) {
+            rowsByPayment[i] = new RowBitmap();
+        }
+    }
+
+    private int sharedRowCount() {
+        return (int) meta.getLong(META_ROW_COUNT);
+    }
+
+    private int sharedGeneration() {
+        return (int) (meta.getLong(META_ROW_COUNT) >>> 32);
+    }
+
+    private long packedRowCount() {
+        return ((long) generation << 32) | rowCount;
+    }
+
+    // One write, so other processes never pair a row count with the wrong generation's files
+    private void publishRowCount() {
+        meta.putLong(META_ROW_COUNT, packedRowCount());
+    }
+
+    private int ordinalFor(String username) {
+        Integer ordinal = userOrdinals.get(username);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        int newOrdinal = userOrdinals.size();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(userDictionaryFile, true), "UTF-8"))) {
+            out.write(username);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        userOrdinals.put(username, newOrdinal);
+        return newOrdinal;
+    }
+
+    // Reads dictionary entries past the ones already known (other processes append too)
+    private void loadUserDictionary() throws IOException {
+        if (!userDictionaryFile.exists()) {
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(userDictionaryFile), "UTF-8"))) {
+            int known = userOrdinals.size();
+            int position = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty() && position++ >= known) {
+                    userOrdinals.put(line, userOrdinals.size());
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= capacity) {
+            return;
+        }
+        while (capacity < rows) {
+            capacity <<= 1;
+        }
+        for (Column column : allColumns()) {
+            column.remap();
+        }
+    }
+
+    private void markDirty() {
+        meta.putInt(META_CLEAN, 0);
+        meta.force();
+    }
+
+    private static int capacityFor(int rows) {
+        return Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(rows, 1)) << 1);
+    }
+
+    // Maps the current generation's files at the current capacity
+    private void mapColumns() throws IOException {
+        ids = new Column("id", Integer.BYTES);
+        users = new Column("user", Integer.BYTES);
+        days = new Column("day", Integer.BYTES);
+        categories = new Column("category", Integer.BYTES);
+        payments = new Column("payment", Byte.BYTES);
+        amounts = new Column("amount", Long.BYTES);
+    }
+
+    private List<Column> allColumns() {
+        return Arrays.asList(ids, users, days, categories, payments, amounts);
+    }
+
+    private static long key(int user, int expenseId) {
+        return ((long) user << 32) | (expenseId & 0xFFFFFFFFL);
+    }
+
+    private class Column {
+        private final File file;
+        private final int width;
+        private MappedByteBuffer buffer;
+
+        Column(String name, int width) throws IOException {
+            this.file = new File(dir, generation == 0 ? name + ".col" : name + "." + generation + ".col");
+            this.width = width;
+            map();
+        }
+
+        private void map() throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * width);
+                buffer.order(ByteOrder.nativeOrder());
+            }
+        }
+
+        // Copies rows of the same column in another generation
+        void copy(Column from, int fromRow, int toRow, int count) {
+            buffer.put(toRow * width, from.buffer, fromRow * width, count * width);
+        }
+
+        // An independent view of the mapped bytes, for one scanning thread
+        ByteBuffer view() {
+            return buffer.duplicate().order(ByteOrder.nativeOrder());
+        }
+
+        void remap() {
+            try {
+                buffer.force();
+                map();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package core;
+
+import java.time.LocalDate;
+
+/**
+ * Fenwick tree of expense totals (minor units) per epoch day, so the total
+ * for any date range is two O(log n) prefix sums and adding or removing an
+ * expense is one O(log n) update. The covered span of days starts at the
+ * first date seen and grows in either direction as needed.
+ *
+ * Not thread-safe; guarded by the owning partition's lock stripe.
+ */
+class DailySumTree {
+    private static final int INITIAL_DAYS = 512;
+
+    // Epoch day stored at position 0
+    private long origin;
+    // Plain per-day totals, kept so the tree can be rebuilt when the span grows
+    private long[] daily;
+    // 1-based Fenwick array over daily
+    private long[] tree;
+
+    DailySumTree() {
+    }
+
+    DailySumTree(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public void add(Expense expense) {
+        update(expense.getDate().toEpochDay(), expense.getAmount());
+    }
+
+    public void remove(Expense expense) {
+        update(expense.getDate().toEpochDay(), -expense.getAmount());
+    }
+
+    /** Total of expenses dated within [from, to]. */
+    public long sum(LocalDate from, LocalDate to) {
+        if (daily == null || from.isAfter(to)) {
+            return 0;
+        }
+        return prefix(to.toEpochDay()) - prefix(from.toEpochDay() - 1);
+    }
+
+    /**
+     * Copies the per-day totals for [fromDay, fromDay + into.length) into the
+     * array, one slot per epoch day; days outside the covered span are 0.
+     */
+    public void copyDays(long fromDay, long[] into) {
+        java.util.Arrays.fill(into, 0);
+        if (daily == null) {
+            return;
+        }
+        long first = Math.max(fromDay, origin);
+        long last = Math.min(fromDay + into.length, origin + daily.length);
+        if (first < last) {
+            System.arraycopy(daily, (int) (first - origin), into, (int) (first - fromDay), (int) (last - first));
+        }
+    }
+
+    // Total of all days up to and including the given one
+    private long prefix(long day) {
+        long position = Math.min(day - origin, daily.length - 1);
+        if (position < 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = (int) position + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void update(long day, long amount) {
+        ensureCovers(day);
+        int position = (int) (day - origin);
+        daily[position] += amount;
+        for (int i = position + 1; i < tree.length; i += i & -i) {
+            tree[i] += amount;
+        }
+    }
+
+    private void ensureCovers(long day) {
+        if (daily == null) {
+            origin = day - INITIAL_DAYS / 2;
+            daily = new long[INITIAL_DAYS];
+            tree = new long[INITIAL_DAYS + 1];
+            return;
+        }
+        if (day >= origin && day < origin + daily.length) {
+            return;
+        }
+
+        // Grow to at least double the span, leaving the same slack on the side that overflowed
+        long first = Math.min(origin, day);
+        long last = Math.max(origin + daily.length - 1, day);
+        int length = (int) Math.max((long) daily.length * 2, last - first + 1 + daily.length);
+        long newOrigin = day < origin ? last - length + 1 : first;
+
+        long[] grown = new long[length];
+        System.arraycopy(daily, 0, grown, (int) (origin - newOrigin), daily.length);
+        origin = newOrigin;
+        daily = grown;
+        rebuild();
+    }
+
+    // Linear-time construction from the daily totals
+    private void rebuild() {
+        tree = new long[daily.length + 1];
+        System.arraycopy(daily, 0, tree, 1, daily.length);
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
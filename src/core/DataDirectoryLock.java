@@ -0,0 +1,70 @@
+package core;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cross-process coordination for the data directory, backed by data/.lock.
+ *
+ * The file is a row of 8-byte slots. Each slot can be locked on its own
+ * with FileChannel.lock (so writers to different slots in different
+ * processes do not block each other) and holds a generation counter that
+ * a writer bumps after every commit. Another process compares the counter
+ * with the value it last saw to find out cheaply whether the data guarded
+ * by that slot changed under it.
+ *
+ * FileLock is held per JVM, not per thread, so callers must make sure only
+ * one thread at a time locks a given slot (Database does this with its own
+ * in-process locks).
+ */
+final class DataDirectoryLock {
+    static final String LOCK_FILE = "data/.lock";
+
+    private static final int SLOT_SIZE = Long.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer generations;
+    private final int slotCount;
+
+    DataDirectoryLock(int slotCount) throws IOException {
+        this.slotCount = slotCount;
+        this.channel = FileChannel.open(new File(LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.generations = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * SLOT_SIZE);
+    }
+
+    /** Blocks until this process holds the slot exclusively. */
+    public FileLock lock(int slot) throws IOException {
+        return channel.lock(offset(slot), SLOT_SIZE, false);
+    }
+
+    /** @return the lock, or null if another process holds the slot */
+    public FileLock tryLock(int slot) throws IOException {
+        return channel.tryLock(offset(slot), SLOT_SIZE, false);
+    }
+
+    public FileLock lockShared(int slot) throws IOException {
+        return channel.lock(offset(slot), SLOT_SIZE, true);
+    }
+
+    public long generation(int slot) {
+        return generations.getLong(offset(slot));
+    }
+
+    /** Bumps the slot's generation. Call only while holding the slot's lock. */
+    public long increment(int slot) {
+        long next = generation(slot) + 1;
+        generations.putLong(offset(slot), next);
+        return next;
+    }
+
+    private int offset(int slot) {
+        if (slot < 0 || slot >= slotCount) {
+            throw new IllegalArgumentException("Invalid lock slot: " + slot);
+        }
+        return slot * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,95 @@
+package core;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * Watches the data directory for commits made by other processes (e.g. the
+ * CLI running next to the GUI) and tells the Database which partition or
+ * file changed, so only that piece is reloaded. Events caused by this
+ * process's own writes are filtered out by the Database.
+ */
+class DataWatcher implements Runnable {
+    private final Database db;
+    private final WatchService watchService;
+    private final Path dataDir;
+    private final Path partitionDir;
+    private volatile boolean running = true;
+
+    private DataWatcher(Database db, WatchService watchService) {
+        this.db = db;
+        this.watchService = watchService;
+        this.dataDir = Paths.get("data");
+        this.partitionDir = Paths.get(ExpensePartition.PARTITION_DIR);
+    }
+
+    /** @return the running watcher, or null if the platform cannot watch the directory */
+    public static DataWatcher start(Database db) {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            DataWatcher watcher = new DataWatcher(db, watchService);
+            WatchEvent.Kind<?>[] kinds = {
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY
+            };
+            watcher.dataDir.register(watchService, kinds);
+            watcher.partitionDir.register(watchService, kinds);
+
+            Thread thread = new Thread(watcher, "data-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Data directory watching unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    continue;
+                }
+                String name = ((Path) event.context()).getFileName().toString();
+                try {
+                    dispatch(dir, name);
+                } catch (RuntimeException e) {
+                    System.err.println("Error reloading " + name + ": " + e.getMessage());
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private void dispatch(Path dir, String name) {
+        if (dir.equals(partitionDir)) {
+            if (name.endsWith(".dat") || name.endsWith(".journal")) {
+                db.onPartitionChanged(name.substring(0, name.lastIndexOf('.')));
+            }
+        } else if (dir.equals(dataDir)) {
+            if (name.equals("users.dat")) {
+                db.onUsersChanged();
+            } else if (name.equals("categories.dat")) {
+                db.onCategoriesChanged();
+            }
+        }
+    }
+}
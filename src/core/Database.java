@@ -1,26 +1,86 @@
 package core;
 
 import java.io.*;
+import java.nio.channels.FileLock;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class Database {
     private static final String USER_FILE = "data/users.dat";
-    private static final String EXPENSE_FILE = "data/expenses.dat";
     private static final String CATEGORY_FILE = "data/categories.dat";
     
-    // Singleton instance
-    private static Database instance;
+    // Pre-partitioning single-file expense store, migrated on startup
+    private static final String LEGACY_EXPENSE_FILE = "data/expenses.dat";
+    private static final String LEGACY_EXPENSE_JOURNAL_FILE = "data/expenses.journal";
+    
+    private static final int LOCK_STRIPES = 64;
+    
+    // Cross-process lock slots in data/.lock: one per user stripe, then these
+    private static final int USERS_SLOT = LOCK_STRIPES;
+    private static final int CATEGORIES_SLOT = LOCK_STRIPES + 1;
+    private static final int COLUMNS_SLOT = LOCK_STRIPES + 2;
+    // Held shared by every running process, exclusively only while a process starts up alone
+    private static final int LIVE_SLOT = LOCK_STRIPES + 3;
+    // First of IdAllocator.STRIPES slots, one per id stripe
+    private static final int IDS_SLOT = LOCK_STRIPES + 4;
+    private static final int SLOT_COUNT = IDS_SLOT + IdAllocator.STRIPES;
+    
+    // Singleton instance, created on first use and safely published by class initialization
+    private static class Holder {
+        static final Database INSTANCE = new Database();
+    }
+    
+    // Resident model, loaded once and kept in sync with disk on every write.
+    // Each user's partition is guarded by that user's lock stripe; users and
+    // categories are rewritten as whole files under their own monitors.
+    private final StripedLocks userLocks = new StripedLocks(LOCK_STRIPES);
+    private final Object usersWriteLock = new Object();
+    private final Object categoriesWriteLock = new Object();
+    private volatile Map<String, User> users;
+    private volatile CategoryRegistry categories;
+    private volatile Map<String, ExpensePartition> partitions;
+    private volatile boolean loaded;
+    
+    // Coordination with other processes sharing the data directory. A slot's
+    // generation differing from the one we last saw means another process
+    // committed to the data that slot guards.
+    private final DataDirectoryLock directoryLock;
+    private final AtomicLongArray seenGenerations = new AtomicLongArray(SLOT_COUNT);
+    private FileLock liveLock;
+    private DataWatcher watcher;
+    
+    // Derived columnar copy of all expenses, used for aggregations
+    private final ColumnStore columnStore;
+    private final IdAllocator expenseIds;
     
     private Database() {
         createDataDirectory();
+        try {
+            directoryLock = new DataDirectoryLock(SLOT_COUNT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open " + DataDirectoryLock.LOCK_FILE, e);
+        }
+        columnStore = new ColumnStore(directoryLock, COLUMNS_SLOT);
+        expenseIds = new IdAllocator(directoryLock, IDS_SLOT, this::maxExpenseId);
+        
+        boolean soleProcess = acquireLiveLock();
+        migrateLegacyExpenses();
         initializeCategories();
+        openColumnStore(soleProcess);
+        shareLiveLock();
+        
+        watcher = DataWatcher.start(this);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
     }
     
     public static Database getInstance() {
-        if (instance == null) {
-            instance = new Database();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
     
     private void createDataDirectory() {
@@ -28,101 +88,743 @@ public class Database {
         if (!dir.exists()) {
             dir.mkdir();
         }
+        File partitionDir = new File(ExpensePartition.PARTITION_DIR);
+        if (!partitionDir.exists()) {
+            partitionDir.mkdir();
+        }
+    }
+    
+    /**
+     * Takes the live slot exclusively if no other process is running. A
+     * process that starts alone may repair shared derived data (the column
+     * store); others wait here until it has finished starting up.
+     */
+    private boolean acquireLiveLock() {
+        try {
+            liveLock = directoryLock.tryLock(LIVE_SLOT);
+            if (liveLock != null) {
+                return true;
+            }
+            liveLock = directoryLock.lockShared(LIVE_SLOT);
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot lock data directory", e);
+        }
+    }
+    
+    private void shareLiveLock() {
+        try {
+            if (!liveLock.isShared()) {
+                liveLock.release();
+                liveLock = directoryLock.lockShared(LIVE_SLOT);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot lock data directory", e);
+        }
+    }
+    
+    private void shutdown() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        try {
+            // The last process out marks the column store clean
+            liveLock.release();
+            FileLock exclusive = directoryLock.tryLock(LIVE_SLOT);
+            columnStore.close(exclusive != null);
+            if (exclusive != null) {
+                exclusive.release();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing database: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Splits the old all-users expenses.dat (plus its journal) into one
+     * partition per user. The legacy files are renamed afterwards so the
+     * migration runs only once and the originals are kept for reference.
+     */
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    private void migrateLegacyExpenses() {
+        try (FileLock lock = directoryLock.lock(USERS_SLOT)) {
+            File legacyFile = new File(LEGACY_EXPENSE_FILE);
+            File legacyJournal = new File(LEGACY_EXPENSE_JOURNAL_FILE);
+            if (legacyFile.exists() || legacyJournal.exists()) {
+                migrateLegacyExpenses(legacyFile, legacyJournal);
+            }
+        } catch (IOException e) {
+            System.err.println("Error migrating expenses: " + e.getMessage());
+        }
     }
     
+    private void migrateLegacyExpenses(File legacyFile, File legacyJournal) {
+        // Keyed by owner and id so replayed updates and deletes find their expense
+        Map<String, Map<Integer, Expense>> byUser = new HashMap<>();
+        for (Expense expense : loadLegacyExpenses()) {
+            byUser.computeIfAbsent(expense.getUsername(), k -> new LinkedHashMap<>()).put(expense.getId(), expense);
+        }
+        new ExpenseJournal(LEGACY_EXPENSE_JOURNAL_FILE).replay(new ExpenseJournal.Replay() {
+            @Override
+            public void upsert(Expense expense) {
+                Map<Integer, Expense> expenses = byUser.computeIfAbsent(expense.getUsername(),
+                    k -> new LinkedHashMap<>());
+                expenses.remove(expense.getId());
+                expenses.put(expense.getId(), expense);
+            }
+            
+            @Override
+            public void delete(int expenseId, String username) {
+                Map<Integer, Expense> expenses = byUser.get(username);
+                if (expenses != null) {
+                    expenses.remove(expenseId);
+                }
+            }
+        });
+        for (Map.Entry<String, Map<Integer, Expense>> entry : byUser.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                new ExpensePartition(entry.getKey()).replaceAll(new ArrayList<>(entry.getValue().values()));
+            }
+        }
+        
+        if (legacyFile.exists()) {
+            legacyFile.renameTo(new File(LEGACY_EXPENSE_FILE + ".migrated"));
+        }
+        legacyJournal.delete();
+    }
+    
+    @SuppressWarnings("try") // the lock is only held, never referenced
     private void initializeCategories() {
-        List<Category> categories = loadCategories();
-        if (categories.isEmpty()) {
-            categories = Arrays.asList(Category.DEFAULT_CATEGORIES);
-            saveCategories(categories);
+        ensureLoaded();
+        synchronized (categoriesWriteLock) {
+            try (FileLock lock = directoryLock.lock(CATEGORIES_SLOT)) {
+                refreshCategoriesIfChanged();
+                if (categories.isEmpty()) {
+                    installCategories(Arrays.asList(Category.DEFAULT_CATEGORIES));
+                    saveCategories(categories.all());
+                    commit(CATEGORIES_SLOT);
+                }
+            } catch (IOException e) {
+                System.err.println("Error initializing categories: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void openColumnStore(boolean soleProcess) {
+        try {
+            if (columnStore.open(soleProcess)) {
+                rebuildColumnStore();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open column store", e);
+        }
+    }
+    
+    private void rebuildColumnStore() {
+        columnStore.clear();
+        for (String username : partitionNames()) {
+            // Read through a throwaway partition so the rebuild does not
+            // make every user's expenses resident
+            for (Expense expense : new ExpensePartition(username).getExpenses()) {
+                columnStore.append(expense);
+            }
+        }
+    }
+    
+    private Set<String> partitionNames() {
+        Set<String> names = new TreeSet<>();
+        String[] files = new File(ExpensePartition.PARTITION_DIR).list();
+        if (files != null) {
+            for (String file : files) {
+                if (file.endsWith(".dat") || file.endsWith(".journal")) {
+                    names.add(file.substring(0, file.lastIndexOf('.')));
+                }
+            }
+        }
+        return names;
+    }
+    
+    // Cross-process change tracking
+    
+    // Call while holding the slot's lock, after the write has been made durable
+    private void commit(int slot) {
+        long before = seenGenerations.get(slot);
+        long generation = directoryLock.increment(slot);
+        // Only advance if we had seen every earlier commit to this slot
+        if (generation == before + 1) {
+            seenGenerations.set(slot, generation);
+        }
+    }
+    
+    private boolean changedElsewhere(int slot) {
+        return directoryLock.generation(slot) != seenGenerations.get(slot);
+    }
+    
+    private void refreshUsersIfChanged() {
+        if (!changedElsewhere(USERS_SLOT)) {
+            return;
+        }
+        synchronized (usersWriteLock) {
+            long generation = directoryLock.generation(USERS_SLOT);
+            Map<String, User> loadedUsers = new ConcurrentHashMap<>();
+            for (User user : loadUsers()) {
+                loadedUsers.put(user.getUsername(), user);
+            }
+            users = loadedUsers;
+            seenGenerations.set(USERS_SLOT, generation);
+        }
+    }
+    
+    private void refreshCategoriesIfChanged() {
+        if (!changedElsewhere(CATEGORIES_SLOT)) {
+            return;
+        }
+        synchronized (categoriesWriteLock) {
+            long generation = directoryLock.generation(CATEGORIES_SLOT);
+            installCategories(loadCategories());
+            seenGenerations.set(CATEGORIES_SLOT, generation);
+        }
+    }
+    
+    /**
+     * Called by the DataWatcher when a partition's files change. Only a
+     * resident partition whose files no longer match what this process
+     * wrote is reloaded; our own commits are recognised and ignored.
+     */
+    void onPartitionChanged(String username) {
+        if (!loaded) {
+            return;
+        }
+        Lock lock = userLocks.forKey(username).writeLock();
+        lock.lock();
+        try {
+            ExpensePartition previous = partitions.get(username);
+            if (previous != null && previous.isStale()) {
+                previous.close();
+                partitions.remove(username);
+                partition(username);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    void onUsersChanged() {
+        refreshUsersIfChanged();
+    }
+    
+    void onCategoriesChanged() {
+        refreshCategoriesIfChanged();
+    }
+    
+    // Cache management
+    
+    /**
+     * Discards the resident model so the next access reloads it from disk.
+     * Use this when the data files may have been changed outside this instance.
+     */
+    public void invalidate() {
+        userLocks.lockAll();
+        try {
+            loaded = false;
+        } finally {
+            userLocks.unlockAll();
+        }
+    }
+    
+    public void reload() {
+        userLocks.lockAll();
+        try {
+            loaded = false;
+            ensureLoaded();
+        } finally {
+            userLocks.unlockAll();
+        }
+    }
+    
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            
+            // Nothing is resident yet, so everything up to now counts as seen
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                seenGenerations.set(slot, directoryLock.generation(slot));
+            }
+            
+            Map<String, User> loadedUsers = new ConcurrentHashMap<>();
+            for (User user : loadUsers()) {
+                loadedUsers.put(user.getUsername(), user);
+            }
+            users = loadedUsers;
+            
+            installCategories(loadCategories());
+            
+            // Expense partitions are loaded lazily, one user at a time
+            if (partitions != null) {
+                partitions.values().forEach(ExpensePartition::close);
+            }
+            partitions = new ConcurrentHashMap<>();
+            
+            loaded = true;
         }
     }
     
     // User operations
+    @SuppressWarnings("try") // the lock is only held, never referenced
     public void saveUser(User user) {
-        List<User> users = loadUsers();
-        // Remove existing user with same username
-        users.removeIf(u -> u.getUsername().equals(user.getUsername()));
-        users.add(user);
-        saveUsers(users);
+        ensureLoaded();
+        synchronized (usersWriteLock) {
+            try (FileLock lock = directoryLock.lock(USERS_SLOT)) {
+                refreshUsersIfChanged();
+                users.put(user.getUsername(), user);
+                saveUsers(new ArrayList<>(users.values()));
+                commit(USERS_SLOT);
+            } catch (IOException e) {
+                System.err.println("Error saving user: " + e.getMessage());
+            }
+        }
     }
     
     public User getUser(String username) {
-        List<User> users = loadUsers();
-        return users.stream()
-            .filter(u -> u.getUsername().equals(username))
-            .findFirst()
-            .orElse(null);
+        ensureLoaded();
+        refreshUsersIfChanged();
+        return users.get(username);
     }
     
+    /**
+     * Whether a user of this name exists, ignoring case: each user's
+     * expense files are named after the username, and names differing only
+     * by case would share them on case-insensitive filesystems.
+     */
     public boolean userExists(String username) {
-        return getUser(username) != null;
+        if (getUser(username) != null) {
+            return true;
+        }
+        for (String existing : users.keySet()) {
+            if (existing.equalsIgnoreCase(username)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     // Expense operations
     public void saveExpense(Expense expense) {
-        List<Expense> expenses = loadExpenses();
-        expenses.add(expense);
-        saveExpenses(expenses);
+        writePartition(expense.getUsername(), partition -> {
+            partition.add(expense);
+            columnStore.append(expense);
+            return true;
+        });
+    }
+    
+    public boolean updateExpense(Expense expense) {
+        return writePartition(expense.getUsername(), partition -> {
+            if (!partition.update(expense)) {
+                return false;
+            }
+            columnStore.update(expense);
+            return true;
+        });
+    }
+    
+    /** Allocates an expense id that is unique for this user across processes. */
+    public int nextExpenseId(String username) {
+        return expenseIds.next(username);
+    }
+    
+    private int maxExpenseId(String username) {
+        int max = 0;
+        for (Expense expense : getUserExpenses(username)) {
+            max = Math.max(max, expense.getId());
+        }
+        return max;
     }
     
     public List<Expense> getUserExpenses(String username) {
-        List<Expense> allExpenses = loadExpenses();
-        List<Expense> userExpenses = new ArrayList<>();
-        for (Expense expense : allExpenses) {
-            if (expense.getUsername().equals(username)) {
-                userExpenses.add(expense);
+        return readPartition(username, partition -> new ArrayList<>(partition.getExpenses()));
+    }
+    
+    /** The user's expense with the given id, or null if there is none. */
+    public Expense getUserExpense(String username, int expenseId) {
+        return readPartition(username, partition -> partition.getExpense(expenseId));
+    }
+    
+    /** The user's expenses dated within [from, to], in date order. */
+    public List<Expense> getUserExpensesBetween(String username, LocalDate from, LocalDate to) {
+        return readPartition(username, partition -> partition.getExpensesBetween(from, to));
+    }
+    
+    /**
+     * Like getUserExpensesBetween, but a partition that is not already
+     * resident is read through a throwaway instance and dropped, so a job
+     * walking every user only holds the partitions it is working on.
+     */
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    public List<Expense> readUserExpensesBetween(String username, LocalDate from, LocalDate to) {
+        ensureLoaded();
+        Lock lock = userLocks.forKey(username).readLock();
+        lock.lock();
+        try {
+            ExpensePartition resident = partitions.get(username);
+            if (resident != null && resident.isLoaded() && !resident.isStale()) {
+                return resident.getExpensesBetween(from, to);
+            }
+            ExpensePartition partition = new ExpensePartition(username);
+            try {
+                synchronized (userLocks.forKey(username)) {
+                    try (FileLock fileLock = directoryLock.lockShared(userLocks.indexOf(username))) {
+                        partition.load();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot lock expenses for " + username, e);
+                    }
+                }
+                return partition.getExpensesBetween(from, to);
+            } finally {
+                partition.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public List<Expense> getUserExpensesByCategory(String username, int categoryId) {
+        return readPartition(username, partition -> partition.getExpensesByCategory(categoryId));
+    }
+    
+    /** The user's expenses matching the query, in its sort order and up to its limit. */
+    public List<Expense> queryUserExpenses(String username, ExpenseQuery query) {
+        return readPartition(username, partition -> partition.query(query));
+    }
+    
+    /**
+     * Count and total, as {count, sum}, of the user's expenses matching the
+     * query, ignoring its sort and limit. Date, amount, category and payment
+     * criteria are answered from the column store's bitmaps, reading only
+     * the selected rows, or none when just counting by category and payment.
+     * Without amount or payment criteria and in at most one category, a user
+     * whose rows are dense in the store is scanned with the column kernels.
+     * Text and recurring criteria are checked on the expenses, starting from
+     * the text index's postings when there is text to match.
+     */
+    public long[] countAndSumUserExpenses(String username, ExpenseQuery query) {
+        if (query.needsExpenseFields()) {
+            return readPartition(username, partition -> partition.countAndSum(query));
+        }
+        int user = columnStore.userOrdinal(username);
+        BitSet categoryIds = query.getCategoryIds();
+        if (query.getPaymentMethods() == null && (categoryIds == null || categoryIds.cardinality() == 1)
+                && query.getMinAmount() == Long.MIN_VALUE && query.getMaxAmount() == Long.MAX_VALUE) {
+            return columnStore.countAndSum(user, categoryIds == null ? ColumnStore.ANY : categoryIds.nextSetBit(0),
+                clampDay(query.getFrom()), clampDay(query.getTo()));
+        }
+        return columnStore.countAndSum(user, categoryIds, query.getPaymentMethods(),
+            clampDay(query.getFrom()), clampDay(query.getTo()), query.getMinAmount(), query.getMaxAmount());
+    }
+    
+    /** Number of the user's expenses matching the query, ignoring its sort and limit. */
+    public int countUserExpenses(String username, ExpenseQuery query) {
+        boolean bitmapsOnly = !query.needsExpenseFields()
+            && query.getFrom().equals(LocalDate.MIN) && query.getTo().equals(LocalDate.MAX)
+            && query.getMinAmount() == Long.MIN_VALUE && query.getMaxAmount() == Long.MAX_VALUE;
+        if (bitmapsOnly) {
+            return columnStore.select(columnStore.userOrdinal(username),
+                query.getCategoryIds(), query.getPaymentMethods()).cardinality();
+        }
+        return (int) countAndSumUserExpenses(username, query)[0];
+    }
+    
+    // The column store keeps epoch days as ints
+    private static int clampDay(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+    
+    /** The user's most recently dated expenses, newest first. */
+    public List<Expense> getLatestUserExpenses(String username, int limit) {
+        return readPartition(username, partition -> partition.getLatestExpenses(limit));
+    }
+    
+    /**
+     * A page of the user's expenses, newest first, starting after the given
+     * key (or from the newest expense if the key is null).
+     */
+    public ExpensePage getUserExpensePage(String username, ExpensePage.Key after, int limit) {
+        return readPartition(username, partition -> partition.getExpensesOlderThan(after, limit));
+    }
+    
+    /**
+     * Opens a cursor over the user's expenses dated within [from, to] that
+     * match the filter (null for all), oldest first unless newestFirst.
+     * Expenses are paged pageSize at a time. Oldest first over a partition
+     * that is not resident, they are streamed from its files without
+     * loading it; otherwise they are paged from the resident partition,
+     * which is loaded in full, and the filter runs under the user's read
+     * lock. Either way the filter must not call back into the database.
+     */
+    public ExpenseCursor openCursor(String username, LocalDate from, LocalDate to,
+            Predicate<Expense> filter, int pageSize, boolean newestFirst) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        ExpenseStream stream = newestFirst ? null : openStream(username, from, to);
+        if (stream != null) {
+            return new ExpenseCursor(key -> stream.nextPage(filter, pageSize), stream);
+        }
+        return new ExpenseCursor(key -> readPartition(username,
+            partition -> partition.getPage(key, from, to, filter, pageSize, newestFirst)), null);
+    }
+    
+    // Opens the user's files for streaming, under the same locks as a load;
+    // null if the partition is resident anyway or its snapshot cannot be streamed
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    private ExpenseStream openStream(String username, LocalDate from, LocalDate to) {
+        ensureLoaded();
+        Lock lock = userLocks.forKey(username).readLock();
+        lock.lock();
+        try {
+            ExpensePartition resident = partitions.get(username);
+            if (resident != null && resident.isLoaded() && !resident.isStale()) {
+                return null;
             }
+            ExpensePartition partition = new ExpensePartition(username);
+            try {
+                synchronized (userLocks.forKey(username)) {
+                    try (FileLock fileLock = directoryLock.lockShared(userLocks.indexOf(username))) {
+                        return partition.openStream(from, to);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read expenses for " + username, e);
+            } finally {
+                partition.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Materialized per-user aggregates, maintained on every write; amounts in minor units
+    public long getUserTotal(String username) {
+        return readPartition(username, partition -> partition.getAggregates().getTotal());
+    }
+    
+    public int getUserExpenseCount(String username) {
+        return readPartition(username, partition -> partition.getAggregates().getCount());
+    }
+    
+    public long getUserMonthTotal(String username, YearMonth month) {
+        return readPartition(username, partition -> partition.getAggregates().getMonthTotal(month));
+    }
+    
+    /** Total of the user's expenses dated within [from, to], in O(log n). */
+    public long getUserTotalBetween(String username, LocalDate from, LocalDate to) {
+        return readPartition(username, partition -> partition.getTotalBetween(from, to));
+    }
+    
+    public int getUserMonthCount(String username, YearMonth month) {
+        return readPartition(username, partition -> partition.getAggregates().getMonthCount(month));
+    }
+    
+    /**
+     * The user's total for each day within [from, to], indexed by days since
+     * from; days without expenses are 0.
+     */
+    public long[] getUserDailyTotals(String username, LocalDate from, LocalDate to) {
+        return readPartition(username, partition -> partition.getDailyTotals(from, to));
+    }
+    
+    /**
+     * Rolls the user's expense cube up to the grouping, over months within
+     * [from, to] (null for open) and the given categories and payment
+     * methods (null for any). The report has sums, counts, minimums and
+     * maximums but no argmax/argmin expenses, and DAY is not supported.
+     */
+    public <K> Report<K> getUserSummary(String username, YearMonth from, YearMonth to,
+            BitSet categoryIds, Set<Expense.PaymentMethod> paymentMethods, Report.Grouping<K> grouping) {
+        return readPartition(username, partition -> partition.rollUp(from, to, categoryIds, paymentMethods, grouping));
+    }
+    
+    /** Totals indexed by category id; categories without expenses are 0. */
+    public long[] getUserCategoryTotals(String username) {
+        return readPartition(username, partition -> partition.getAggregates().getCategoryTotals());
+    }
+    
+    /**
+     * Every user's counts and totals per category for expenses dated within
+     * [from, to] (null for open), aggregated in parallel from the column
+     * store without loading any partition.
+     */
+    public PlatformSpend getPlatformSpend(LocalDate from, LocalDate to) {
+        return new PlatformSpend(columnStore.totalsByUserAndCategory(
+            from != null ? clampDay(from) : Integer.MIN_VALUE, to != null ? clampDay(to) : Integer.MAX_VALUE));
+    }
+    
+    // Index lookups return fresh lists, so results can leave the read lock
+    private <T> T readPartition(String username, Function<ExpensePartition, T> query) {
+        Lock lock = userLocks.forKey(username).readLock();
+        lock.lock();
+        try {
+            return query.apply(partition(username));
+        } finally {
+            lock.unlock();
         }
-        return userExpenses;
     }
     
     public boolean deleteExpense(int expenseId, String username) {
-        List<Expense> expenses = loadExpenses();
-        boolean removed = expenses.removeIf(e -> 
-            e.getId() == expenseId && e.getUsername().equals(username));
-        if (removed) {
-            saveExpenses(expenses);
+        return writePartition(username, partition -> {
+            if (!partition.delete(expenseId)) {
+                return false;
+            }
+            columnStore.delete(expenseId, username);
+            return true;
+        });
+    }
+    
+    private interface PartitionWrite {
+        boolean apply(ExpensePartition partition);
+    }
+    
+    // Runs a mutation under the user's stripe lock in this process and the
+    // stripe's slot lock across processes, after catching up with any
+    // commits another process made to the partition. The journal fsync is
+    // awaited after both locks are released, so writers to the same stripe
+    // can share it.
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    private boolean writePartition(String username, PartitionWrite write) {
+        int stripe = userLocks.indexOf(username);
+        Lock lock = userLocks.forKey(username).writeLock();
+        ExpensePartition partition;
+        boolean changed;
+        lock.lock();
+        try (FileLock fileLock = directoryLock.lock(stripe)) {
+            partition = partition(username, true);
+            changed = write.apply(partition);
+            if (changed) {
+                commit(stripe);
+            }
+        } catch (IOException e) {
+            System.err.println("Error locking expenses for " + username + ": " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+        if (changed) {
+            partition.sync();
+        }
+        return changed;
+    }
+    
+    // Callers must hold the user's lock stripe (read or write)
+    private ExpensePartition partition(String username) {
+        return partition(username, false);
+    }
+    
+    // A partition must be loaded as of a single commit: a writer holds the
+    // stripe's slot already, anyone else takes it shared, so another process
+    // cannot snapshot or append between our reads of the snapshot and journal
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    private ExpensePartition partition(String username, boolean slotHeld) {
+        ensureLoaded();
+        if (changedElsewhere(userLocks.indexOf(username))) {
+            partitions.computeIfPresent(username, (name, resident) -> {
+                if (!resident.isStale()) {
+                    return resident;
+                }
+                resident.close();
+                return null;
+            });
+        }
+        ExpensePartition partition = partitions.computeIfAbsent(username, 
+            name -> new ExpensePartition(name));
+        if (!slotHeld && !partition.isLoaded()) {
+            // Readers of a stripe run concurrently; one at a time may hold its slot
+            synchronized (userLocks.forKey(username)) {
+                if (!partition.isLoaded()) {
+                    try (FileLock fileLock = directoryLock.lockShared(userLocks.indexOf(username))) {
+                        partition.load();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot lock expenses for " + username, e);
+                    }
+                }
+            }
         }
-        return removed;
+        return partition;
     }
     
     // Category operations
     public List<Category> getAllCategories() {
-        return loadCategories();
+        ensureLoaded();
+        refreshCategoriesIfChanged();
+        return new ArrayList<>(categories.all());
     }
     
     public Category getCategoryById(int id) {
-        return loadCategories().stream()
-            .filter(c -> c.getId() == id)
-            .findFirst()
-            .orElse(null);
+        ensureLoaded();
+        refreshCategoriesIfChanged();
+        return categories.get(id);
+    }
+    
+    /** Adds the category, or replaces the one with the same id. */
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    public void saveCategory(Category category) {
+        ensureLoaded();
+        synchronized (categoriesWriteLock) {
+            try (FileLock lock = directoryLock.lock(CATEGORIES_SLOT)) {
+                refreshCategoriesIfChanged();
+                CategoryRegistry updated = categories.with(category);
+                saveCategories(updated.all());
+                install(updated);
+                commit(CATEGORIES_SLOT);
+            } catch (IOException e) {
+                System.err.println("Error saving category: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Expenses resolve their category ids through the installed registry
+    private void installCategories(List<Category> loaded) {
+        install(new CategoryRegistry(loaded));
+    }
+    
+    private void install(CategoryRegistry registry) {
+        categories = registry;
+        CategoryRegistry.install(registry);
     }
     
     // File loading methods
-    @SuppressWarnings("unchecked")
     private List<User> loadUsers() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(USER_FILE))) {
-            return (List<User>) ois.readObject();
-        } catch (FileNotFoundException e) {
+        File file = new File(USER_FILE);
+        if (!file.exists()) {
             return new ArrayList<>();
-        } catch (IOException | ClassNotFoundException e) {
+        }
+        try {
+            List<User> users = LedgerCodec.readUsers(file);
+            if (LedgerCodec.isLegacy(file)) {
+                saveUsers(users);
+            }
+            return users;
+        } catch (IOException e) {
             System.err.println("Error loading users: " + e.getMessage());
             return new ArrayList<>();
         }
     }
     
+    // Callers must hold usersWriteLock
     private void saveUsers(List<User> users) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(USER_FILE))) {
-            oos.writeObject(users);
+        try {
+            LedgerCodec.writeUsers(new File(USER_FILE), users);
         } catch (IOException e) {
             System.err.println("Error saving users: " + e.getMessage());
         }
     }
     
     @SuppressWarnings("unchecked")
-    private List<Expense> loadExpenses() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(EXPENSE_FILE))) {
+    private List<Expense> loadLegacyExpenses() {
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(LEGACY_EXPENSE_FILE))) {
             return (List<Expense>) ois.readObject();
         } catch (FileNotFoundException e) {
             return new ArrayList<>();
@@ -132,29 +834,27 @@ public class Database {
         }
     }
     
-    private void saveExpenses(List<Expense> expenses) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(EXPENSE_FILE))) {
-            oos.writeObject(expenses);
-        } catch (IOException e) {
-            System.err.println("Error saving expenses: " + e.getMessage());
-        }
-    }
-    
-    @SuppressWarnings("unchecked")
     private List<Category> loadCategories() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(CATEGORY_FILE))) {
-            return (List<Category>) ois.readObject();
-        } catch (FileNotFoundException e) {
+        File file = new File(CATEGORY_FILE);
+        if (!file.exists()) {
             return new ArrayList<>();
-        } catch (IOException | ClassNotFoundException e) {
+        }
+        try {
+            List<Category> categories = LedgerCodec.readCategories(file);
+            if (LedgerCodec.isLegacy(file)) {
+                saveCategories(categories);
+            }
+            return categories;
+        } catch (IOException e) {
             System.err.println("Error loading categories: " + e.getMessage());
             return new ArrayList<>();
         }
     }
     
+    // Callers must hold categoriesWriteLock
     private void saveCategories(List<Category> categories) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(CATEGORY_FILE))) {
-            oos.writeObject(categories);
+        try {
+            LedgerCodec.writeCategories(new File(CATEGORY_FILE), categories);
         } catch (IOException e) {
             System.err.println("Error saving categories: " + e.getMessage());
         }
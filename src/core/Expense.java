@@ -1,16 +1,23 @@
 package core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class Expense implements Serializable {
+    private static final long serialVersionUID = 1275893884674460489L;
+    
     private int id;
     private String username;
     private String title;
     private String description;
-    private double amount;
-    private Category category;
+    // In minor units (cents), see Money. Named apart from the legacy double
+    // "amount" so serialization does not reject old streams on a type clash
+    private long amountMinor;
+    // Resolved through the CategoryRegistry instead of holding a Category copy
+    private int categoryId;
     private LocalDate date;
     private PaymentMethod paymentMethod;
     private boolean isRecurring;
@@ -20,13 +27,18 @@ public class Expense implements Serializable {
         CASH, CREDIT_CARD, DEBIT_CARD, BANK_TRANSFER, UPI, OTHER
     }
     
-    public Expense(int id, String username, String title, double amount, 
+    public Expense(int id, String username, String title, long amount, 
                    Category category, LocalDate date) {
+        this(id, username, title, amount, category.getId(), date);
+    }
+    
+    public Expense(int id, String username, String title, long amount, 
+                   int categoryId, LocalDate date) {
         this.id = id;
         this.username = username;
         this.title = title;
-        this.amount = amount;
-        this.category = category;
+        this.amountMinor = amount;
+        this.categoryId = categoryId;
         this.date = date;
         this.paymentMethod = PaymentMethod.CASH;
         this.isRecurring = false;
@@ -46,11 +58,15 @@ public class Expense implements Serializable {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
     
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    /** The amount in minor units (cents). */
+    public long getAmount() { return amountMinor; }
+    public void setAmount(long amount) { this.amountMinor = amount; }
     
-    public Category getCategory() { return category; }
-    public void setCategory(Category category) { this.category = category; }
+    public Category getCategory() { return CategoryRegistry.current().resolve(categoryId); }
+    public void setCategory(Category category) { this.categoryId = category.getId(); }
+    
+    public int getCategoryId() { return categoryId; }
+    public void setCategoryId(int categoryId) { this.categoryId = categoryId; }
     
     public LocalDate getDate() { return date; }
     public void setDate(LocalDate date) { this.date = date; }
@@ -64,10 +80,30 @@ public class Expense implements Serializable {
     public void setRecurring(boolean recurring) { isRecurring = recurring; }
     
     public LocalDateTime getCreatedAt() { return createdAt; }
+    void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    // Older files embed a full Category object and a double amount
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        username = (String) fields.get("username", null);
+        title = (String) fields.get("title", null);
+        description = (String) fields.get("description", null);
+        // Amounts were doubles before fixed-point minor units
+        amountMinor = fields.getObjectStreamClass().getField("amount") != null
+            ? Money.fromMajor(fields.get("amount", 0.0)) : fields.get("amountMinor", 0L);
+        date = (LocalDate) fields.get("date", null);
+        paymentMethod = (PaymentMethod) fields.get("paymentMethod", PaymentMethod.CASH);
+        isRecurring = fields.get("isRecurring", false);
+        createdAt = (LocalDateTime) fields.get("createdAt", null);
+        
+        Category legacyCategory = (Category) fields.get("category", null);
+        categoryId = legacyCategory != null ? legacyCategory.getId() : fields.get("categoryId", 0);
+    }
     
     @Override
     public String toString() {
-        return String.format("ID: %d | %s | $%.2f | %s | %s", 
-            id, title, amount, category.getName(), date);
+        return String.format("ID: %d | %s | $%s | %s | %s", 
+            id, title, Money.format(amountMinor), getCategory().getName(), date);
     }
 }
\ No newline at end of file
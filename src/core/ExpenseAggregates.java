@@ -0,0 +1,145 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Running totals for one user's expenses: overall, per year-month and per
+ * category, each with a count. ExpensePartition applies every add, update
+ * and delete as a delta, so dashboard numbers are O(1) reads regardless of
+ * how many expenses the user has. Amounts are minor units, so totals stay
+ * exact however many deltas are applied.
+ *
+ * Not thread-safe; guarded by the owning partition's lock stripe.
+ */
+class ExpenseAggregates {
+    // Snapshot file these totals were saved with, used to check they still apply on load
+    private long snapshotLength;
+    private long snapshotModified;
+
+    private long total;
+    private int count;
+    private IntTotals byMonth = new IntTotals();
+    private IntTotals byCategory = new IntTotals();
+
+    ExpenseAggregates() {
+    }
+
+    ExpenseAggregates(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public void add(Expense expense) {
+        apply(expense, 1);
+    }
+
+    public void remove(Expense expense) {
+        apply(expense, -1);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getMonthTotal(YearMonth month) {
+        return byMonth.sum(monthKey(month.getYear(), month.getMonthValue()));
+    }
+
+    public int getMonthCount(YearMonth month) {
+        return byMonth.count(monthKey(month.getYear(), month.getMonthValue()));
+    }
+
+    /**
+     * Totals indexed by category id, up to the largest id the user has
+     * expenses in; categories without expenses are 0.
+     */
+    public long[] getCategoryTotals() {
+        int[] ids = byCategory.keys();
+        int maxId = -1;
+        for (int id : ids) {
+            maxId = Math.max(maxId, id);
+        }
+        long[] totals = new long[maxId + 1];
+        for (int id : ids) {
+            if (id >= 0) {
+                totals[id] = byCategory.sum(id);
+            }
+        }
+        return totals;
+    }
+
+    public int getCategoryCount(int categoryId) {
+        return byCategory.count(categoryId);
+    }
+
+    private void apply(Expense expense, int sign) {
+        long amount = sign * expense.getAmount();
+        total += amount;
+        count += sign;
+        LocalDate date = expense.getDate();
+        byMonth.add(monthKey(date.getYear(), date.getMonthValue()), amount, sign);
+        byCategory.add(expense.getCategoryId(), amount, sign);
+    }
+
+    static int monthKey(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    // Persistence, through LedgerCodec
+
+    boolean matchesSnapshot(File snapshot) {
+        return snapshot.length() == snapshotLength && snapshot.lastModified() == snapshotModified;
+    }
+
+    void stampSnapshot(File snapshot) {
+        snapshotLength = snapshot.length();
+        snapshotModified = snapshot.lastModified();
+    }
+
+    void write(RecordWriter out) throws IOException {
+        out.writeVarLong(snapshotLength);
+        out.writeVarLong(snapshotModified);
+        out.writeSignedVarLong(total);
+        out.writeVarInt(count);
+        writeTotals(out, byMonth);
+        writeTotals(out, byCategory);
+    }
+
+    static ExpenseAggregates read(RecordReader in) throws IOException {
+        ExpenseAggregates aggregates = new ExpenseAggregates();
+        aggregates.snapshotLength = in.readVarLong();
+        aggregates.snapshotModified = in.readVarLong();
+        aggregates.total = in.readSignedVarLong();
+        aggregates.count = in.readVarInt();
+        aggregates.byMonth = readTotals(in);
+        aggregates.byCategory = readTotals(in);
+        return aggregates;
+    }
+
+    private static void writeTotals(RecordWriter out, IntTotals totals) throws IOException {
+        int[] keys = totals.keys();
+        out.writeVarInt(keys.length);
+        for (int key : keys) {
+            out.writeVarInt(key);
+            out.writeSignedVarLong(totals.sum(key));
+            out.writeVarInt(totals.count(key));
+        }
+    }
+
+    private static IntTotals readTotals(RecordReader in) throws IOException {
+        int size = in.readVarInt();
+        IntTotals totals = new IntTotals(size);
+        for (int i = 0; i < size; i++) {
+            totals.add(in.readVarInt(), in.readSignedVarLong(), in.readVarInt());
+        }
+        return totals;
+    }
+}
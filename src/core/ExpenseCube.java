@@ -0,0 +1,120 @@
+package core;
+
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * One user's expenses pre-aggregated by year-month, category and payment
+ * method, each cell holding sum, count, min and max. Cells are ordered by
+ * month first, so a month range is one contiguous run of cells, and any
+ * roll-up (quarter, year, category, payment method) merges a handful of
+ * cells instead of touching expenses.
+ *
+ * ExpensePartition applies every write as a delta. Sum and count subtract
+ * exactly; removing a cell's minimum or maximum rescans that month's
+ * expenses for the cell through the date index.
+ *
+ * Not thread-safe; guarded by the owning partition's lock stripe.
+ */
+class ExpenseCube {
+    private static final class Cell {
+        long sum;
+        int count;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        void include(long amount) {
+            min = Math.min(min, amount);
+            max = Math.max(max, amount);
+        }
+    }
+
+    private final NavigableMap<Long, Cell> cells = new TreeMap<>();
+
+    ExpenseCube(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public void add(Expense expense) {
+        Cell cell = cells.computeIfAbsent(key(expense), k -> new Cell());
+        cell.sum += expense.getAmount();
+        cell.count++;
+        cell.include(expense.getAmount());
+    }
+
+    /**
+     * Removes the expense. The index must no longer hold it, or hold its
+     * replacement; it is used to recompute the cell's extremes.
+     */
+    public void remove(Expense expense, ExpenseIndex index) {
+        long key = key(expense);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            return;
+        }
+        long amount = expense.getAmount();
+        cell.sum -= amount;
+        cell.count--;
+        if (cell.count == 0) {
+            cells.remove(key);
+        } else if (amount == cell.min || amount == cell.max) {
+            recomputeExtremes(cell, expense, index);
+        }
+    }
+
+    /**
+     * Rolls up cells for months in [from, to] (null for open) whose category
+     * and payment method are in the given sets (null for any), grouped by
+     * the grouping's key for each cell.
+     */
+    public <K> Report<K> rollUp(YearMonth from, YearMonth to, BitSet categoryIds,
+            Set<Expense.PaymentMethod> paymentMethods, Report.Grouping<K> grouping) {
+        Report<K> report = Report.empty(grouping);
+        long fromKey = from != null ? monthIndex(from) << 32 : Long.MIN_VALUE;
+        long toKey = to != null ? (monthIndex(to) << 32) | 0xFFFFFFFFL : Long.MAX_VALUE;
+        if (fromKey > toKey) {
+            return report;
+        }
+        Expense.PaymentMethod[] methods = Expense.PaymentMethod.values();
+        for (Map.Entry<Long, Cell> entry : cells.subMap(fromKey, true, toKey, true).entrySet()) {
+            long key = entry.getKey();
+            int categoryId = (int) (key >>> 8) & 0xFFFFFF;
+            Expense.PaymentMethod method = methods[(int) key & 0xFF];
+            if ((categoryIds != null && !categoryIds.get(categoryId))
+                    || (paymentMethods != null && !paymentMethods.contains(method))) {
+                continue;
+            }
+            int monthIndex = (int) (key >> 32);
+            YearMonth month = YearMonth.of(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1);
+            Cell cell = entry.getValue();
+            report.addCell(month, categoryId, method, cell.sum, cell.count, cell.min, cell.max);
+        }
+        return report;
+    }
+
+    private void recomputeExtremes(Cell cell, Expense removed, ExpenseIndex index) {
+        YearMonth month = YearMonth.from(removed.getDate());
+        cell.min = Long.MAX_VALUE;
+        cell.max = Long.MIN_VALUE;
+        for (Expense expense : index.between(month.atDay(1).toEpochDay(), month.atEndOfMonth().toEpochDay())) {
+            if (expense.getCategoryId() == removed.getCategoryId()
+                    && expense.getPaymentMethod() == removed.getPaymentMethod()
+                    && expense.getId() != removed.getId()) {
+                cell.include(expense.getAmount());
+            }
+        }
+    }
+
+    // Month in the high half so cells sort by month; category and payment method below
+    private static long key(Expense expense) {
+        return monthIndex(YearMonth.from(expense.getDate())) << 32
+            | (expense.getCategoryId() & 0xFFFFFFL) << 8
+            | expense.getPaymentMethod().ordinal();
+    }
+
+    private static long monthIndex(YearMonth month) {
+        return month.getYear() * 12L + month.getMonthValue() - 1;
+    }
+}
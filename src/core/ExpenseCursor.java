@@ -0,0 +1,78 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates a user's expenses in date order, one page at a time. When the
+ * user's partition is not resident, pages are read straight from its files
+ * through an {@link ExpenseStream}, so only a page and the journal's
+ * changes are held however long the history is. Otherwise the cursor
+ * keyset-pages over the resident partition, each page under a short read
+ * lock, so writes made while iterating are never blocked for long; rows
+ * added behind the cursor are simply not seen.
+ *
+ * A streaming cursor keeps the snapshot file open until it is exhausted or
+ * closed; close one that is abandoned early, or the stream it backs.
+ *
+ * Obtain one from {@link Database#openCursor} or
+ * {@link ExpenseManager#streamExpenses}.
+ */
+public class ExpenseCursor implements Iterator<Expense>, AutoCloseable {
+    private final Function<ExpensePage.Key, ExpensePage> pages;
+    // The stream pages are read from, or null when paging the resident partition
+    private Closeable files;
+    private ExpensePage page;
+    private int position;
+
+    ExpenseCursor(Function<ExpensePage.Key, ExpensePage> pages, Closeable files) {
+        this.pages = pages;
+        this.files = files;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page == null) {
+            page = pages.apply(null);
+        }
+        while (position == page.getExpenses().size()) {
+            if (!page.hasNext()) {
+                close();
+                return false;
+            }
+            page = pages.apply(page.getNext());
+            position = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public Expense next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.getExpenses().get(position++);
+    }
+
+    /** The remaining expenses as a sequential, ordered stream; closing it closes the cursor. */
+    public Stream<Expense> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (files != null) {
+            try {
+                files.close();
+            } catch (IOException e) {
+                System.err.println("Error closing expense cursor: " + e.getMessage());
+            }
+            files = null;
+        }
+    }
+}
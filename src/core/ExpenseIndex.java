@@ -0,0 +1,282 @@
+package core;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * One user's expenses with the secondary indexes used by queries: by id,
+ * by date (epoch day, ordered for range lookups), by category id and by
+ * the words of their text.
+ * Every index is updated on add and remove, so month, range and category
+ * lookups cost O(log n + matches) instead of a scan of the whole list.
+ *
+ * Not thread-safe; ExpensePartition is guarded by the user's lock stripe.
+ */
+class ExpenseIndex {
+    // Insertion order doubles as the partition's storage order
+    private final Map<Integer, Expense> byId = new LinkedHashMap<>();
+    // Each day's list is kept in ExpensePage.RECENCY order
+    private final NavigableMap<Long, List<Expense>> byDay = new TreeMap<>();
+    private final Map<Integer, List<Expense>> byCategory = new HashMap<>();
+    private final TextIndex byText;
+
+    ExpenseIndex(Collection<Expense> expenses) {
+        this(expenses, null);
+    }
+
+    /** Indexes the expenses, reusing a text index already built over exactly them if given. */
+    ExpenseIndex(Collection<Expense> expenses, TextIndex text) {
+        for (Expense expense : expenses) {
+            insert(expense);
+        }
+        byText = text != null ? text : new TextIndex(byId.values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Collection<Expense> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    public Expense get(int expenseId) {
+        return byId.get(expenseId);
+    }
+
+    public TextIndex getTextIndex() {
+        return byText;
+    }
+
+    /** Adds the expense, replacing one with the same id in place. */
+    public Expense put(Expense expense) {
+        Expense previous = insert(expense);
+        if (previous != null) {
+            byText.remove(previous);
+        }
+        byText.add(expense);
+        return previous;
+    }
+
+    public Expense remove(int expenseId) {
+        Expense removed = byId.remove(expenseId);
+        if (removed != null) {
+            unindex(removed);
+            byText.remove(removed);
+        }
+        return removed;
+    }
+
+    // Adds to every index but the text index
+    private Expense insert(Expense expense) {
+        Expense previous = byId.put(expense.getId(), expense);
+        if (previous != null) {
+            unindex(previous);
+        }
+        List<Expense> day = byDay.computeIfAbsent(expense.getDate().toEpochDay(), d -> new ArrayList<>(2));
+        int position = Collections.binarySearch(day, expense, ExpensePage.RECENCY);
+        day.add(position < 0 ? -position - 1 : position, expense);
+        byCategory.computeIfAbsent(expense.getCategoryId(), id -> new ArrayList<>()).add(expense);
+        return previous;
+    }
+
+    /** Expenses dated within [fromDay, toDay], in date order. */
+    public List<Expense> between(long fromDay, long toDay) {
+        List<Expense> result = new ArrayList<>();
+        if (fromDay <= toDay) {
+            for (List<Expense> day : byDay.subMap(fromDay, true, toDay, true).values()) {
+                result.addAll(day);
+            }
+        }
+        return result;
+    }
+
+    public List<Expense> inCategory(int categoryId) {
+        List<Expense> postings = byCategory.get(categoryId);
+        return postings != null ? new ArrayList<>(postings) : new ArrayList<>();
+    }
+
+    /** The most recent expenses, newest first. */
+    public List<Expense> latest(int limit) {
+        return olderThan(null, limit).getExpenses();
+    }
+
+    /**
+     * Up to limit expenses that come strictly before the key in recency
+     * order, newest first; a null key starts from the newest expense.
+     */
+    public ExpensePage olderThan(ExpensePage.Key key, int limit) {
+        return page(key, Long.MIN_VALUE, Long.MAX_VALUE, null, limit, true);
+    }
+
+    /**
+     * Up to limit expenses dated within [fromDay, toDay] and accepted by the
+     * filter (null accepts all), continuing past the key in recency order:
+     * newest first, or oldest first if newestFirst is false.
+     */
+    public ExpensePage page(ExpensePage.Key key, long fromDay, long toDay, Predicate<Expense> filter,
+            int limit, boolean newestFirst) {
+        if (key != null) {
+            long keyDay = key.getDate().toEpochDay();
+            if (newestFirst) {
+                toDay = Math.min(toDay, keyDay);
+            } else {
+                fromDay = Math.max(fromDay, keyDay);
+            }
+        }
+        List<Expense> result = new ArrayList<>(Math.min(limit, byId.size()));
+        if (fromDay > toDay) {
+            return new ExpensePage(result, false);
+        }
+        NavigableMap<Long, List<Expense>> days = byDay.subMap(fromDay, true, toDay, true);
+        for (List<Expense> day : (newestFirst ? days.descendingMap() : days).values()) {
+            for (int n = 0; n < day.size(); n++) {
+                Expense expense = day.get(newestFirst ? day.size() - 1 - n : n);
+                if (key != null && (newestFirst ? key.compareTo(expense) <= 0 : key.compareTo(expense) >= 0)) {
+                    continue;
+                }
+                if (filter != null && !filter.test(expense)) {
+                    continue;
+                }
+                if (result.size() == limit) {
+                    return new ExpensePage(result, true);
+                }
+                result.add(expense);
+            }
+        }
+        return new ExpensePage(result, false);
+    }
+
+    /**
+     * Runs the query: candidates come from the text index when there is
+     * text to match, else from the category postings or the date index,
+     * whichever is estimated to be smaller, and all criteria are checked in
+     * one pass over them. Date-ordered queries read from the date index
+     * stop as soon as the limit is reached.
+     */
+    public List<Expense> query(ExpenseQuery query) {
+        long fromDay = query.getFrom().toEpochDay();
+        long toDay = query.getTo().toEpochDay();
+        if (query.getText() == null && !byCategoryIsSmaller(query.getCategoryIds(), fromDay, toDay)
+                && query.getSortField() == ExpenseQuery.SortField.DATE) {
+            return page(null, fromDay, toDay, query::matches, query.getLimit(), query.isDescending()).getExpenses();
+        }
+        List<Expense> matches = new ArrayList<>();
+        forEachMatch(query, matches::add);
+        return firstInOrder(matches, query.comparator(), query.getLimit());
+    }
+
+    /**
+     * Count and sum, as {count, sum}, of the expenses matching the query,
+     * ignoring its sort and limit; candidates are picked as for query().
+     */
+    public long[] countAndSum(ExpenseQuery query) {
+        long[] result = new long[2];
+        forEachMatch(query, expense -> {
+            result[0]++;
+            result[1] += expense.getAmount();
+        });
+        return result;
+    }
+
+    private void forEachMatch(ExpenseQuery query, Consumer<Expense> action) {
+        long fromDay = query.getFrom().toEpochDay();
+        long toDay = query.getTo().toEpochDay();
+        BitSet categories = query.getCategoryIds();
+
+        if (query.getText() != null) {
+            BitSet ids = byText.search(query.getText());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                Expense expense = byId.get(id);
+                if (expense != null && query.matches(expense)) {
+                    action.accept(expense);
+                }
+            }
+        } else if (byCategoryIsSmaller(categories, fromDay, toDay)) {
+            for (int id = categories.nextSetBit(0); id >= 0; id = categories.nextSetBit(id + 1)) {
+                for (Expense expense : byCategory.getOrDefault(id, Collections.emptyList())) {
+                    if (query.matches(expense)) {
+                        action.accept(expense);
+                    }
+                }
+            }
+        } else if (fromDay <= toDay) {
+            for (List<Expense> day : byDay.subMap(fromDay, true, toDay, true).values()) {
+                for (Expense expense : day) {
+                    if (query.matches(expense)) {
+                        action.accept(expense);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean byCategoryIsSmaller(BitSet categories, long fromDay, long toDay) {
+        return categories != null && postingCount(categories) < estimateBetween(fromDay, toDay);
+    }
+
+    // The first limit expenses in order; a small limit keeps a bounded heap instead of sorting everything
+    private static List<Expense> firstInOrder(List<Expense> expenses, Comparator<Expense> order, int limit) {
+        if (limit >= expenses.size() / 8) {
+            expenses.sort(order);
+            return expenses.size() > limit ? new ArrayList<>(expenses.subList(0, limit)) : expenses;
+        }
+        PriorityQueue<Expense> best = new PriorityQueue<>(limit + 1, order.reversed());
+        for (Expense expense : expenses) {
+            if (best.size() < limit) {
+                best.add(expense);
+            } else if (limit > 0 && order.compare(expense, best.peek()) < 0) {
+                best.poll();
+                best.add(expense);
+            }
+        }
+        List<Expense> result = new ArrayList<>(best);
+        result.sort(order);
+        return result;
+    }
+
+    private int postingCount(BitSet categories) {
+        int count = 0;
+        for (int id = categories.nextSetBit(0); id >= 0; id = categories.nextSetBit(id + 1)) {
+            List<Expense> postings = byCategory.get(id);
+            count += postings != null ? postings.size() : 0;
+        }
+        return count;
+    }
+
+    // Expenses expected in [fromDay, toDay], assuming they are spread evenly over the dated span
+    private long estimateBetween(long fromDay, long toDay) {
+        if (byDay.isEmpty()) {
+            return 0;
+        }
+        long first = byDay.firstKey();
+        long last = byDay.lastKey();
+        long overlap = Math.min(toDay, last) - Math.max(fromDay, first) + 1;
+        if (overlap <= 0) {
+            return 0;
+        }
+        return (long) Math.ceil((double) byId.size() * overlap / (last - first + 1));
+    }
+
+    private void unindex(Expense expense) {
+        removeFrom(byDay, expense.getDate().toEpochDay(), expense);
+        removeFrom(byCategory, expense.getCategoryId(), expense);
+    }
+
+    private static <K> void removeFrom(Map<K, List<Expense>> index, K key, Expense expense) {
+        List<Expense> postings = index.get(key);
+        if (postings == null) {
+            return;
+        }
+        for (int i = 0; i < postings.size(); i++) {
+            if (postings.get(i) == expense) {
+                postings.remove(i);
+                break;
+            }
+        }
+        if (postings.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only log of expense mutations. Each record is written as
+ * [op][length][payload] so a single add, update or delete costs one small
+ * sequential write. The log is replayed on top of the last snapshot when
+ * expenses are loaded and truncated once a new snapshot has been written.
+ * Appends only write; {@link #sync()} waits until they are durable, batching
+ * the fsync with other writers' through the shared {@link GroupCommitter}.
+ * Callers release their locks before syncing so that appends to the same
+ * journal can share an fsync too.
+ */
+class ExpenseJournal {
+    // Ledger version 1 payloads, with double amounts; still replayed
+    static final byte OP_ADD_V1 = 1;
+    static final byte OP_UPDATE_V1 = 2;
+    static final byte OP_DELETE = 3;
+    static final byte OP_ADD = 4;
+    static final byte OP_UPDATE = 5;
+
+    private final File file;
+    private int recordCount = -1;
+    // Length of the complete records seen by the last replay plus our appends since
+    private long validLength = -1;
+    private FileChannel channel;
+
+    ExpenseJournal(String path) {
+        this.file = new File(path);
+    }
+
+    public void appendAdd(Expense expense) {
+        append(OP_ADD, LedgerCodec.encodeExpense(expense));
+    }
+
+    public void appendUpdate(Expense expense) {
+        append(OP_UPDATE, LedgerCodec.encodeExpense(expense));
+    }
+
+    public void appendDelete(int expenseId, String username) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(expenseId);
+            out.writeUTF(username);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(OP_DELETE, bytes.toByteArray());
+    }
+
+    /** Receives journal records in order during a replay. */
+    interface Replay {
+        // Adds and updates alike, so replaying a journal that was already
+        // folded into the snapshot (crash before clear) is harmless
+        void upsert(Expense expense);
+
+        void delete(int expenseId, String username);
+    }
+
+    /**
+     * Passes every complete record in the journal to the replay, in order.
+     * An incomplete record at the tail is skipped. It may be another
+     * process's append in flight, so it is only truncated by the next
+     * append, which runs under the partition's cross-process lock.
+     */
+    public void replay(Replay replay) {
+        read(replay);
+    }
+
+    public int size() {
+        if (recordCount < 0) {
+            read(null);
+        }
+        return recordCount;
+    }
+
+    // Walks the complete records, applying each to the replay; with no
+    // replay only the headers are read and the payloads skipped
+    private void read(Replay replay) {
+        int count = 0;
+        long length = 0;
+
+        if (file.exists()) {
+            long fileLength = file.length();
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    int payloadLength;
+                    try {
+                        byte op = in.readByte();
+                        payloadLength = in.readInt();
+                        if (replay != null) {
+                            byte[] payload = new byte[payloadLength];
+                            in.readFully(payload);
+                            apply(replay, op, payload);
+                        } else if (length + 1 + 4 + payloadLength > fileLength) {
+                            // Skipping can run past the end, so a torn tail is caught by length
+                            break;
+                        } else {
+                            skipFully(in, payloadLength);
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    length += 1 + 4 + payloadLength;
+                    count++;
+                }
+            } catch (IOException e) {
+                System.err.println("Error replaying expense journal: " + e.getMessage());
+            }
+        }
+        recordCount = count;
+        validLength = length;
+    }
+
+    public void clear() {
+        truncate(0);
+        recordCount = 0;
+        validLength = 0;
+    }
+
+    private void apply(Replay replay, byte op, byte[] payload) throws IOException {
+        switch (op) {
+            case OP_ADD:
+            case OP_UPDATE:
+            case OP_ADD_V1:
+            case OP_UPDATE_V1: {
+                int version = op == OP_ADD || op == OP_UPDATE ? LedgerCodec.VERSION : 1;
+                replay.upsert(LedgerCodec.decodeExpense(payload, version));
+                break;
+            }
+            case OP_DELETE: {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                int expenseId = in.readInt();
+                String username = in.readUTF();
+                replay.delete(expenseId, username);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type: " + op);
+        }
+    }
+
+    // skipBytes may stop short, so keep going until a read finds the end
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped == 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private void append(byte op, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + payload.length);
+        record.put(op).putInt(payload.length).put(payload).flip();
+        try {
+            synchronized (this) {
+                FileChannel out = channel();
+                // A torn record left by a crash would corrupt everything after it
+                if (validLength >= 0 && out.size() > validLength) {
+                    out.truncate(validLength);
+                }
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+                if (recordCount >= 0) {
+                    recordCount++;
+                }
+                if (validLength >= 0) {
+                    validLength += record.limit();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to expense journal: " + e.getMessage());
+        }
+    }
+
+    /** Returns once every record appended so far is on disk. */
+    public void sync() {
+        FileChannel out;
+        synchronized (this) {
+            out = channel;
+        }
+        if (out == null) {
+            return;
+        }
+        try {
+            GroupCommitter.shared().sync(out);
+        } catch (ClosedChannelException e) {
+            // close() forced the channel before closing it
+        } catch (IOException e) {
+            System.err.println("Error syncing expense journal: " + e.getMessage());
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                // Appends not yet synced become durable before the channel goes away
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing expense journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private synchronized void truncate(long length) {
+        try {
+            channel().truncate(length);
+            channel.force(true);
+        } catch (IOException e) {
+            System.err.println("Error truncating expense journal: " + e.getMessage());
+        }
+    }
+}
@@ -3,9 +3,14 @@ package core;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class ExpenseManager {
+    /** Longest trend horizon, 50 years; series arrays are sized by the horizon. */
+    public static final int MAX_TREND_MONTHS = 600;
+    private static final int STREAM_PAGE_SIZE = 256;
+    
     private Database db;
     private String currentUsername;
     
@@ -14,49 +19,42 @@ public class ExpenseManager {
         this.currentUsername = username;
     }
     
-    public boolean addExpense(String title, double amount, int categoryId, 
+    /** Amounts here and in the totals below are minor units (cents), see Money. */
+    public boolean addExpense(String title, long amount, int categoryId, 
                              LocalDate date, String description) {
         Category category = db.getCategoryById(categoryId);
         if (category == null) {
             return false;
         }
         
-        // Generate unique ID
-        List<Expense> expenses = db.getUserExpenses(currentUsername);
-        int newId = expenses.stream()
-            .mapToInt(Expense::getId)
-            .max()
-            .orElse(0) + 1;
-        
-        Expense expense = new Expense(newId, currentUsername, title, amount, category, date);
+        Expense expense = new Expense(db.nextExpenseId(currentUsername), currentUsername, title, amount, categoryId, date);
         expense.setDescription(description);
         
         db.saveExpense(expense);
         return true;
     }
     
-    public boolean updateExpense(int expenseId, String title, double amount, 
+    public boolean updateExpense(int expenseId, String title, long amount, 
                                 int categoryId, LocalDate date, String description) {
-        List<Expense> expenses = db.getUserExpenses(currentUsername);
-        for (Expense expense : expenses) {
-            if (expense.getId() == expenseId) {
-                expense.setTitle(title);
-                expense.setAmount(amount);
-                expense.setCategory(db.getCategoryById(categoryId));
-                expense.setDate(date);
-                expense.setDescription(description);
-                
-                // Save all expenses back
-                List<Expense> allExpenses = db.getUserExpenses(currentUsername);
-                allExpenses.removeIf(e -> e.getId() == expenseId);
-                allExpenses.add(expense);
-                
-                // Update in database
-                // (This is simplified - in real app, we'd update the specific expense)
-                return true;
-            }
+        Category category = db.getCategoryById(categoryId);
+        if (category == null) {
+            return false;
+        }
+        
+        Expense existing = db.getUserExpense(currentUsername, expenseId);
+        if (existing == null) {
+            return false;
         }
-        return false;
+        
+        // Resident expenses are shared with other readers, so the
+        // update is applied to a copy and swapped in by the database
+        Expense updated = new Expense(expenseId, currentUsername, title, amount, categoryId, date);
+        updated.setDescription(description);
+        updated.setPaymentMethod(existing.getPaymentMethod());
+        updated.setRecurring(existing.isRecurring());
+        updated.setCreatedAt(existing.getCreatedAt());
+        
+        return db.updateExpense(updated);
     }
     
     public boolean deleteExpense(int expenseId) {
@@ -68,74 +66,192 @@ public class ExpenseManager {
     }
     
     public List<Expense> getExpensesByCategory(int categoryId) {
-        return getExpenses().stream()
-            .filter(e -> e.getCategory().getId() == categoryId)
-            .collect(Collectors.toList());
+        return db.getUserExpensesByCategory(currentUsername, categoryId);
     }
     
     public List<Expense> getExpensesByMonth(int year, int month) {
-        return getExpenses().stream()
-            .filter(e -> {
-                LocalDate expenseDate = e.getDate();
-                return expenseDate.getYear() == year && 
-                       expenseDate.getMonthValue() == month;
-            })
-            .collect(Collectors.toList());
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return db.getUserExpensesBetween(currentUsername, yearMonth.atDay(1), yearMonth.atEndOfMonth());
     }
     
-    public double getTotalExpenses() {
-        return getExpenses().stream()
-            .mapToDouble(Expense::getAmount)
-            .sum();
+    public List<Expense> query(ExpenseQuery query) {
+        return db.queryUserExpenses(currentUsername, query);
     }
     
-    public double getMonthlyTotal(int year, int month) {
-        return getExpensesByMonth(year, month).stream()
-            .mapToDouble(Expense::getAmount)
-            .sum();
+    /** Number of expenses matching the query, regardless of its limit. */
+    public int countExpenses(ExpenseQuery query) {
+        return db.countUserExpenses(currentUsername, query);
     }
     
-    public Map<Category, Double> getCategoryWiseExpenses() {
-        Map<Category, Double> categoryTotals = new HashMap<>();
-        
-        for (Expense expense : getExpenses()) {
-            Category category = expense.getCategory();
-            categoryTotals.merge(category, expense.getAmount(), Double::sum);
+    /** Total of the expenses matching the query, regardless of its limit. */
+    public long getTotal(ExpenseQuery query) {
+        return countAndSum(query)[1];
+    }
+    
+    /** Count and total, as {count, sum}, of the expenses matching the query, in one pass. */
+    public long[] countAndSum(ExpenseQuery query) {
+        return db.countAndSumUserExpenses(currentUsername, query);
+    }
+    
+    /** Expenses with words starting with each word of the text, newest first. */
+    public List<Expense> search(String text, int limit) {
+        return query(new ExpenseQuery().containing(text).limit(limit));
+    }
+    
+    public long getTotalExpenses() {
+        return db.getUserTotal(currentUsername);
+    }
+    
+    public int getExpenseCount() {
+        return db.getUserExpenseCount(currentUsername);
+    }
+    
+    public long getMonthlyTotal(int year, int month) {
+        return db.getUserMonthTotal(currentUsername, YearMonth.of(year, month));
+    }
+    
+    public int getMonthlyCount(int year, int month) {
+        return db.getUserMonthCount(currentUsername, YearMonth.of(year, month));
+    }
+    
+    /** Total spent between two dates, both inclusive. */
+    public long getRangeTotal(LocalDate from, LocalDate to) {
+        return db.getUserTotalBetween(currentUsername, from, to);
+    }
+    
+    /** Total spent over the last given number of days, including today. */
+    public long getLastDaysTotal(int days) {
+        LocalDate today = LocalDate.now();
+        return getRangeTotal(today.minusDays(days - 1), today);
+    }
+    
+    /**
+     * Totals indexed by category id, for lookup against
+     * CategoryRegistry; categories without expenses are 0.
+     */
+    public long[] getCategoryWiseExpenses() {
+        return db.getUserCategoryTotals(currentUsername);
+    }
+    
+    /**
+     * All of the user's expenses, oldest first, a page at a time; streamed
+     * from the files when the user's expenses are not already in memory.
+     */
+    public Stream<Expense> streamExpenses() {
+        return streamExpenses(LocalDate.MIN, LocalDate.MAX, null);
+    }
+    
+    public Stream<Expense> streamExpenses(LocalDate from, LocalDate to, Predicate<Expense> filter) {
+        return db.openCursor(currentUsername, from, to, filter, STREAM_PAGE_SIZE, false).stream();
+    }
+    
+    /**
+     * Statistics for months within [from, to] (null for open), rolled up
+     * from the pre-aggregated cube without reading expenses. Groups have no
+     * argmax/argmin expenses; use getReport when those are needed.
+     */
+    public <K> Report<K> getSummary(YearMonth from, YearMonth to, Report.Grouping<K> grouping) {
+        return db.getUserSummary(currentUsername, from, to, null, null, grouping);
+    }
+    
+    /** As above, restricted to the given categories and payment methods (null for any). */
+    public <K> Report<K> getSummary(YearMonth from, YearMonth to, Report.Grouping<K> grouping,
+            Set<Integer> categoryIds, Set<Expense.PaymentMethod> paymentMethods) {
+        BitSet categories = null;
+        if (categoryIds != null) {
+            categories = new BitSet();
+            for (int id : categoryIds) {
+                if (id >= 0) {
+                    categories.set(id);
+                }
+            }
         }
-        
-        return categoryTotals;
+        return db.getUserSummary(currentUsername, from, to, categories, paymentMethods, grouping);
     }
     
-    public Map<String, Double> getDailyExpenses(int year, int month) {
-        Map<String, Double> dailyTotals = new TreeMap<>();
-        
-        getExpensesByMonth(year, month).forEach(expense -> {
-            String day = expense.getDate().toString();
-            dailyTotals.merge(day, expense.getAmount(), Double::sum);
-        });
-        
-        return dailyTotals;
+    /** Monthly series for the given number of months ending with the current month. */
+    public Trend getTrend(int months) {
+        return getTrend(YearMonth.now(), months);
+    }
+    
+    /** Monthly series for the given number of months ending with last, from the cube. */
+    public Trend getTrend(YearMonth last, int months) {
+        if (months < 1 || months > MAX_TREND_MONTHS) {
+            throw new IllegalArgumentException(
+                "Months must be between 1 and " + MAX_TREND_MONTHS + ": " + months);
+        }
+        YearMonth first = last.minusMonths(months - 1);
+        return Trend.of(first, last, getSummary(first, last, Report.Grouping.MONTH));
+    }
+    
+    /** Single-pass statistics over all of the user's expenses. */
+    public <K> Report<K> getReport(Report.Grouping<K> grouping) {
+        return Report.of(streamExpenses()::iterator, grouping);
+    }
+    
+    public <K> Report<K> getReport(LocalDate from, LocalDate to, Report.Grouping<K> grouping) {
+        return Report.of(db.getUserExpensesBetween(currentUsername, from, to), grouping);
+    }
+    
+    public <K> Report<K> getMonthlyReport(int year, int month, Report.Grouping<K> grouping) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return getReport(yearMonth.atDay(1), yearMonth.atEndOfMonth(), grouping);
+    }
+    
+    /** Totals per day of the month: index 0 is the 1st. */
+    public long[] getDailyTotals(int year, int month) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return getDailyTotals(yearMonth.atDay(1), yearMonth.atEndOfMonth());
+    }
+    
+    /** Totals per day within [from, to], indexed by days since from. */
+    public long[] getDailyTotals(LocalDate from, LocalDate to) {
+        return db.getUserDailyTotals(currentUsername, from, to);
     }
     
     public List<Expense> getRecentExpenses(int limit) {
-        return getExpenses().stream()
-            .sorted((e1, e2) -> e2.getDate().compareTo(e1.getDate()))
-            .limit(limit)
-            .collect(Collectors.toList());
+        return db.getLatestUserExpenses(currentUsername, limit);
+    }
+    
+    /** The first page of recent expenses; follow getNext() for older pages. */
+    public ExpensePage getRecentPage(int pageSize) {
+        return getRecentPage(null, pageSize);
+    }
+    
+    public ExpensePage getRecentPage(ExpensePage.Key after, int pageSize) {
+        return db.getUserExpensePage(currentUsername, after, pageSize);
     }
     
     public List<Category> getAllCategories() {
         return db.getAllCategories();
     }
     
+    public boolean updateCategoryBudget(int categoryId, double budgetLimit) {
+        Category category = db.getCategoryById(categoryId);
+        if (category == null) {
+            return false;
+        }
+        
+        // Registered categories are shared, so the change goes through a copy
+        Category updated = category.copy();
+        updated.setBudgetLimit(budgetLimit);
+        db.saveCategory(updated);
+        return true;
+    }
+    
+    public void reload() {
+        db.reload();
+    }
+    
     public double getBudgetUtilization(double monthlyBudget) {
         if (monthlyBudget <= 0) return 0;
         
         YearMonth currentMonth = YearMonth.now();
-        double currentMonthTotal = getMonthlyTotal(
+        // Budgets are plain major-unit limits; only the total is converted
+        double currentMonthTotal = Money.toMajor(getMonthlyTotal(
             currentMonth.getYear(), 
             currentMonth.getMonthValue()
-        );
+        ));
         
         return (currentMonthTotal / monthlyBudget) * 100;
     }
@@ -0,0 +1,80 @@
+package core;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * One page of a user's expenses, newest first, with a keyset cursor for
+ * fetching the next, older page. Expenses are ordered by date, then by
+ * creation time, then by id, so the order is total and stable and a page
+ * boundary never skips or repeats an expense, even when others are added
+ * in between.
+ */
+public class ExpensePage {
+    // Oldest first; pages walk it in reverse
+    static final Comparator<Expense> RECENCY = Comparator.comparing(Expense::getDate)
+        .thenComparingLong(ExpensePage::createdSecond)
+        .thenComparingInt(Expense::getId);
+
+    /** Position after the last expense of a page; pass it back to get the next page. */
+    public static final class Key {
+        private final LocalDate date;
+        private final long createdSecond;
+        private final int id;
+
+        private Key(Expense expense) {
+            this.date = expense.getDate();
+            this.createdSecond = createdSecond(expense);
+            this.id = expense.getId();
+        }
+
+        public static Key after(Expense expense) {
+            return new Key(expense);
+        }
+
+        LocalDate getDate() {
+            return date;
+        }
+
+        /** Compares this position with an expense in {@link #RECENCY} order. */
+        int compareTo(Expense expense) {
+            int result = date.compareTo(expense.getDate());
+            if (result == 0) {
+                result = Long.compare(createdSecond, createdSecond(expense));
+            }
+            if (result == 0) {
+                result = Integer.compare(id, expense.getId());
+            }
+            return result;
+        }
+    }
+
+    private final List<Expense> expenses;
+    private final Key next;
+
+    ExpensePage(List<Expense> expenses, boolean hasMore) {
+        this.expenses = Collections.unmodifiableList(expenses);
+        this.next = hasMore && !expenses.isEmpty() ? new Key(expenses.get(expenses.size() - 1)) : null;
+    }
+
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+
+    /** Cursor for the next page, or null if this is the last one. */
+    public Key getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    // Creation time at the precision the ledger stores, so order survives a reload
+    private static long createdSecond(Expense expense) {
+        LocalDateTime createdAt = expense.getCreatedAt();
+        return createdAt != null ? createdAt.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,362 @@
+package core;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * One user's slice of the expense store: a snapshot file plus a journal of
+ * the mutations made since that snapshot, both under data/expenses/.
+ * Loading, writing and deleting for a user only ever touch that user's files.
+ * Not thread-safe on its own; Database guards each partition with the
+ * owning user's lock stripe.
+ */
+class ExpensePartition {
+    static final String PARTITION_DIR = "data/expenses";
+
+    // Journal records replayed on load before a new snapshot is written
+    private static final int SNAPSHOT_THRESHOLD = 256;
+
+    private final String username;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final File aggregatesFile;
+    private final File textIndexFile;
+    private final ExpenseJournal journal;
+    private ExpenseIndex expenses;
+    private ExpenseAggregates aggregates;
+    private DailySumTree dailySums;
+    private ExpenseCube cube;
+    // File state as of our last load or write, used to detect other processes' commits
+    private List<Object> knownFileState;
+
+    ExpensePartition(String username) {
+        this.username = username;
+        this.snapshotFile = new File(PARTITION_DIR, username + ".dat");
+        this.journalFile = new File(PARTITION_DIR, username + ".journal");
+        this.aggregatesFile = new File(PARTITION_DIR, username + ".agg");
+        this.textIndexFile = new File(PARTITION_DIR, username + ".terms");
+        this.journal = new ExpenseJournal(journalFile.getPath());
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Collection<Expense> getExpenses() {
+        ensureLoaded();
+        return expenses.all();
+    }
+
+    /** The expense with the given id, or null if the user has none. */
+    public Expense getExpense(int expenseId) {
+        ensureLoaded();
+        return expenses.get(expenseId);
+    }
+
+    public ExpenseAggregates getAggregates() {
+        ensureLoaded();
+        return aggregates;
+    }
+
+    public <K> Report<K> rollUp(YearMonth from, YearMonth to, BitSet categoryIds,
+            Set<Expense.PaymentMethod> paymentMethods, Report.Grouping<K> grouping) {
+        ensureLoaded();
+        return cube.rollUp(from, to, categoryIds, paymentMethods, grouping);
+    }
+
+    public long getTotalBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        return dailySums.sum(from, to);
+    }
+
+    /** Per-day totals for [from, to], indexed by days since from. */
+    public long[] getDailyTotals(LocalDate from, LocalDate to) {
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        if (days < 0 || days > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid date range: " + from + " to " + to);
+        }
+        ensureLoaded();
+        long[] totals = new long[(int) days];
+        dailySums.copyDays(from.toEpochDay(), totals);
+        return totals;
+    }
+
+    public List<Expense> getExpensesBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        return expenses.between(from.toEpochDay(), to.toEpochDay());
+    }
+
+    public List<Expense> getExpensesByCategory(int categoryId) {
+        ensureLoaded();
+        return expenses.inCategory(categoryId);
+    }
+
+    public List<Expense> query(ExpenseQuery query) {
+        ensureLoaded();
+        return expenses.query(query);
+    }
+
+    public long[] countAndSum(ExpenseQuery query) {
+        ensureLoaded();
+        return expenses.countAndSum(query);
+    }
+
+    public List<Expense> getLatestExpenses(int limit) {
+        ensureLoaded();
+        return expenses.latest(limit);
+    }
+
+    public ExpensePage getExpensesOlderThan(ExpensePage.Key key, int limit) {
+        ensureLoaded();
+        return expenses.olderThan(key, limit);
+    }
+
+    public ExpensePage getPage(ExpensePage.Key key, LocalDate from, LocalDate to,
+            Predicate<Expense> filter, int limit, boolean newestFirst) {
+        ensureLoaded();
+        return expenses.page(key, from.toEpochDay(), to.toEpochDay(), filter, limit, newestFirst);
+    }
+
+    public void add(Expense expense) {
+        ensureLoaded();
+        Expense previous = expenses.put(expense);
+        if (previous != null) {
+            aggregates.remove(previous);
+            dailySums.remove(previous);
+            cube.remove(previous, expenses);
+        }
+        aggregates.add(expense);
+        dailySums.add(expense);
+        cube.add(expense);
+        journal.appendAdd(expense);
+        snapshotIfNeeded();
+        knownFileState = fileState();
+    }
+
+    public boolean update(Expense expense) {
+        ensureLoaded();
+        if (expenses.get(expense.getId()) == null) {
+            return false;
+        }
+        Expense previous = expenses.put(expense);
+        aggregates.remove(previous);
+        dailySums.remove(previous);
+        cube.remove(previous, expenses);
+        aggregates.add(expense);
+        dailySums.add(expense);
+        cube.add(expense);
+        journal.appendUpdate(expense);
+        snapshotIfNeeded();
+        knownFileState = fileState();
+        return true;
+    }
+
+    public boolean delete(int expenseId) {
+        ensureLoaded();
+        Expense removed = expenses.remove(expenseId);
+        if (removed == null) {
+            return false;
+        }
+        aggregates.remove(removed);
+        dailySums.remove(removed);
+        cube.remove(removed, expenses);
+        journal.appendDelete(expenseId, username);
+        snapshotIfNeeded();
+        knownFileState = fileState();
+        return true;
+    }
+
+    /**
+     * Replaces the partition contents with the given expenses, writing a
+     * fresh snapshot and discarding the journal. Used by migration.
+     */
+    public void replaceAll(List<Expense> newExpenses) {
+        expenses = new ExpenseIndex(newExpenses);
+        aggregates = new ExpenseAggregates(expenses.all());
+        dailySums = new DailySumTree(expenses.all());
+        cube = new ExpenseCube(expenses.all());
+        writeSnapshot();
+        journal.clear();
+        knownFileState = fileState();
+    }
+
+    /**
+     * True if the partition is resident and its files no longer match what
+     * this instance last loaded or wrote, i.e. another process committed.
+     */
+    public boolean isStale() {
+        return expenses != null && !fileState().equals(knownFileState);
+    }
+
+    /**
+     * Opens a stream of the expenses dated within [from, to], oldest first,
+     * over the files, leaving this partition unloaded. Returns null when the
+     * snapshot cannot be streamed: legacy snapshots, and those written
+     * before snapshots were kept in date order.
+     */
+    public ExpenseStream openStream(LocalDate from, LocalDate to) throws IOException {
+        boolean stored = snapshotFile.exists();
+        if (stored && (LedgerCodec.isLegacy(snapshotFile) || !ExpenseStream.inDateOrder(snapshotFile))) {
+            return null;
+        }
+        Map<Integer, Expense> changed = new HashMap<>();
+        journal.replay(new ExpenseJournal.Replay() {
+            @Override
+            public void upsert(Expense expense) {
+                changed.put(expense.getId(), expense);
+            }
+
+            @Override
+            public void delete(int expenseId, String owner) {
+                if (owner.equals(username)) {
+                    changed.put(expenseId, null);
+                }
+            }
+        });
+        return new ExpenseStream(stored ? LedgerCodec.openExpenses(snapshotFile) : null, changed, from, to);
+    }
+
+    /** Waits until the writes made so far are durable; call without holding the user's locks. */
+    public void sync() {
+        journal.sync();
+    }
+
+    public void close() {
+        journal.close();
+    }
+
+    public boolean isLoaded() {
+        return expenses != null;
+    }
+
+    /** Reads the snapshot and journal now rather than on first use. */
+    public void load() {
+        ensureLoaded();
+    }
+
+    // Synchronized because concurrent readers may trigger the first load
+    private synchronized void ensureLoaded() {
+        if (expenses == null) {
+            boolean legacy = LedgerCodec.isLegacy(snapshotFile);
+            List<Expense> loaded = loadSnapshot();
+            // Structures saved with the snapshot are brought up to date with the journal
+            expenses = new ExpenseIndex(loaded, loadTextIndex(loaded.size()));
+            aggregates = loadAggregates(loaded.size());
+            journal.replay(new ExpenseJournal.Replay() {
+                @Override
+                public void upsert(Expense expense) {
+                    Expense previous = expenses.put(expense);
+                    if (previous != null) {
+                        aggregates.remove(previous);
+                    }
+                    aggregates.add(expense);
+                }
+
+                @Override
+                public void delete(int expenseId, String owner) {
+                    Expense removed = owner.equals(username) ? expenses.remove(expenseId) : null;
+                    if (removed != null) {
+                        aggregates.remove(removed);
+                    }
+                }
+            });
+            dailySums = new DailySumTree(expenses.all());
+            cube = new ExpenseCube(expenses.all());
+            if (legacy) {
+                writeSnapshot();
+                journal.clear();
+            }
+            knownFileState = fileState();
+        }
+    }
+
+    // The snapshot's file key changes on every atomic rewrite; the journal only grows or is truncated
+    private List<Object> fileState() {
+        Object snapshotKey = null;
+        if (snapshotFile.exists()) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(
+                    snapshotFile.toPath(), BasicFileAttributes.class);
+                snapshotKey = attributes.fileKey() != null
+                    ? attributes.fileKey() : attributes.lastModifiedTime();
+            } catch (IOException e) {
+                snapshotKey = null;
+            }
+        }
+        return Arrays.asList(snapshotKey, snapshotFile.length(), journalFile.length());
+    }
+
+    // Folds the journal into a fresh snapshot once it grows past the threshold
+    private void snapshotIfNeeded() {
+        if (journal.size() >= SNAPSHOT_THRESHOLD) {
+            writeSnapshot();
+            journal.clear();
+        }
+    }
+
+    private List<Expense> loadSnapshot() {
+        if (!snapshotFile.exists()) {
+            return new ArrayList<>();
+        }
+        try {
+            return LedgerCodec.readExpenses(snapshotFile);
+        } catch (IOException e) {
+            System.err.println("Error loading expenses for " + username + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reuses the aggregates saved with the snapshot if they were written for
+     * it, otherwise folds them from the snapshot's expenses. Either way the
+     * journal has yet to be applied.
+     */
+    private ExpenseAggregates loadAggregates(int snapshotCount) {
+        if (aggregatesFile.exists()) {
+            try {
+                ExpenseAggregates saved = LedgerCodec.readAggregates(aggregatesFile);
+                if (saved != null && saved.matchesSnapshot(snapshotFile)
+                        && saved.getCount() == snapshotCount) {
+                    return saved;
+                }
+            } catch (IOException e) {
+                System.err.println("Error loading aggregates for " + username + ": " + e.getMessage());
+            }
+        }
+        return new ExpenseAggregates(expenses.all());
+    }
+
+    // Like the aggregates, the saved text index is for the snapshot alone
+    private TextIndex loadTextIndex(int expenseCount) {
+        if (textIndexFile.exists()) {
+            try {
+                TextIndex saved = LedgerCodec.readTextIndex(textIndexFile);
+                if (saved != null && saved.matchesSnapshot(snapshotFile)
+                        && saved.getDocumentCount() == expenseCount) {
+                    return saved;
+                }
+            } catch (IOException e) {
+                System.err.println("Error loading text index for " + username + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void writeSnapshot() {
+        try {
+            // In date order, so a cursor can stream the snapshot without loading it
+            LedgerCodec.writeExpenses(snapshotFile, expenses.between(Long.MIN_VALUE, Long.MAX_VALUE));
+            aggregates.stampSnapshot(snapshotFile);
+            LedgerCodec.writeAggregates(aggregatesFile, aggregates);
+            expenses.getTextIndex().stampSnapshot(snapshotFile);
+            LedgerCodec.writeTextIndex(textIndexFile, expenses.getTextIndex());
+        } catch (IOException e) {
+            System.err.println("Error saving expenses for " + username + ": " + e.getMessage());
+        }
+    }
+}
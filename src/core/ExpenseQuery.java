@@ -0,0 +1,190 @@
+package core;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * A composable filter over one user's expenses: date range, amount range,
+ * category and payment-method sets, recurring flag and text match, with a
+ * sort order and limit. Unset criteria match everything, so
+ * {@code new ExpenseQuery()} returns all expenses, newest first.
+ *
+ * <pre>
+ * new ExpenseQuery()
+ *     .between(quarterStart, today)
+ *     .inCategories(food.getId(), shopping.getId())
+ *     .paidBy(Expense.PaymentMethod.CREDIT_CARD)
+ *     .sortBy(ExpenseQuery.SortField.AMOUNT, true)
+ *     .limit(20)
+ * </pre>
+ *
+ * Run it with {@link ExpenseManager#query}. The text, date range and
+ * category set are answered from the partition's indexes; the remaining
+ * criteria are checked together in a single pass over the candidates.
+ */
+public class ExpenseQuery {
+    public enum SortField {
+        DATE, AMOUNT, TITLE
+    }
+
+    private LocalDate from = LocalDate.MIN;
+    private LocalDate to = LocalDate.MAX;
+    private long minAmount = Long.MIN_VALUE;
+    private long maxAmount = Long.MAX_VALUE;
+    // Null means any
+    private BitSet categoryIds;
+    private EnumSet<Expense.PaymentMethod> paymentMethods;
+    private Boolean recurring;
+    private String text;
+    private String[] words;
+    private SortField sortField = SortField.DATE;
+    private boolean descending = true;
+    private int limit = Integer.MAX_VALUE;
+
+    /** Expenses dated within [from, to]; either end may be null for open. */
+    public ExpenseQuery between(LocalDate from, LocalDate to) {
+        this.from = from != null ? from : LocalDate.MIN;
+        this.to = to != null ? to : LocalDate.MAX;
+        return this;
+    }
+
+    /** Amounts within [min, max] in minor units; either end may be null for open. */
+    public ExpenseQuery amountBetween(Long min, Long max) {
+        this.minAmount = min != null ? min : Long.MIN_VALUE;
+        this.maxAmount = max != null ? max : Long.MAX_VALUE;
+        return this;
+    }
+
+    /** Expenses in any of the given categories. */
+    public ExpenseQuery inCategories(int... categoryIds) {
+        this.categoryIds = new BitSet();
+        for (int id : categoryIds) {
+            if (id >= 0) {
+                this.categoryIds.set(id);
+            }
+        }
+        return this;
+    }
+
+    /** Expenses paid by any of the given methods. */
+    public ExpenseQuery paidBy(Expense.PaymentMethod... methods) {
+        this.paymentMethods = EnumSet.noneOf(Expense.PaymentMethod.class);
+        this.paymentMethods.addAll(Arrays.asList(methods));
+        return this;
+    }
+
+    public ExpenseQuery recurring(boolean recurring) {
+        this.recurring = recurring;
+        return this;
+    }
+
+    /**
+     * Expenses where each word of the text starts some word of the title or
+     * description, ignoring case; "net sub" matches "Netflix subscription".
+     * Answered from the partition's text index.
+     */
+    public ExpenseQuery containing(String text) {
+        List<String> words = TextIndex.tokenize(text);
+        this.text = words.isEmpty() ? null : text;
+        this.words = words.toArray(new String[0]);
+        return this;
+    }
+
+    public ExpenseQuery sortBy(SortField field, boolean descending) {
+        this.sortField = field;
+        this.descending = descending;
+        return this;
+    }
+
+    public ExpenseQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /** Whether the expense meets every criterion; sort and limit aside. */
+    public boolean matches(Expense expense) {
+        LocalDate date = expense.getDate();
+        long amount = expense.getAmount();
+        return !date.isBefore(from) && !date.isAfter(to)
+            && amount >= minAmount && amount <= maxAmount
+            && (categoryIds == null || categoryIds.get(expense.getCategoryId()))
+            && (paymentMethods == null || paymentMethods.contains(expense.getPaymentMethod()))
+            && (recurring == null || recurring == expense.isRecurring())
+            && (text == null || matchesWords(expense));
+    }
+
+    private boolean matchesWords(Expense expense) {
+        for (String word : words) {
+            if (!TextIndex.containsWordPrefix(expense.getTitle(), word)
+                    && !TextIndex.containsWordPrefix(expense.getDescription(), word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    LocalDate getFrom() {
+        return from;
+    }
+
+    LocalDate getTo() {
+        return to;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    BitSet getCategoryIds() {
+        return categoryIds;
+    }
+
+    Set<Expense.PaymentMethod> getPaymentMethods() {
+        return paymentMethods;
+    }
+
+    long getMinAmount() {
+        return minAmount;
+    }
+
+    long getMaxAmount() {
+        return maxAmount;
+    }
+
+    // Text and the recurring flag are not in the column store
+    boolean needsExpenseFields() {
+        return text != null || recurring != null;
+    }
+
+    SortField getSortField() {
+        return sortField;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /** Result order; ties fall back to recency so the order is total. */
+    Comparator<Expense> comparator() {
+        Comparator<Expense> order;
+        switch (sortField) {
+            case AMOUNT:
+                order = Comparator.comparingLong(Expense::getAmount).thenComparing(ExpensePage.RECENCY);
+                break;
+            case TITLE:
+                order = Comparator.comparing(Expense::getTitle, String.CASE_INSENSITIVE_ORDER)
+                    .thenComparing(ExpensePage.RECENCY);
+                break;
+            default:
+                order = ExpensePage.RECENCY;
+        }
+        return descending ? order.reversed() : order;
+    }
+}
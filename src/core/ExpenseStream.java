@@ -0,0 +1,128 @@
+package core;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A partition's expenses dated within a range, oldest first, read from its
+ * files rather than from the resident index. The snapshot, which is
+ * written in {@link ExpensePage#RECENCY} order, is decoded one record at a
+ * time and merged with the journal's changes, which are held in memory.
+ * Memory is therefore bounded by the journal and the decoder's string
+ * dictionary, not by the number of expenses. The files are opened together
+ * under the user's locks, so the stream reads the partition as it was
+ * then, whatever is written afterwards.
+ *
+ * Not thread-safe; used by one cursor.
+ */
+final class ExpenseStream implements Closeable {
+    private final LedgerCodec.ExpenseReader snapshot;
+    // Ids the journal added, replaced or deleted (mapped to null)
+    private final Map<Integer, Expense> changed;
+    private final Iterator<Expense> journalled;
+    private final long fromDay;
+    private final long toDay;
+    // Heads of the two sorted inputs, and the first match not yet paged
+    private Expense stored;
+    private Expense journalledHead;
+    private Expense pending;
+
+    ExpenseStream(LedgerCodec.ExpenseReader snapshot, Map<Integer, Expense> changed,
+            LocalDate from, LocalDate to) {
+        this.snapshot = snapshot;
+        this.changed = changed;
+        List<Expense> sorted = new ArrayList<>();
+        for (Expense expense : changed.values()) {
+            if (expense != null) {
+                sorted.add(expense);
+            }
+        }
+        sorted.sort(ExpensePage.RECENCY);
+        this.journalled = sorted.iterator();
+        this.journalledHead = journalled.hasNext() ? journalled.next() : null;
+        this.fromDay = from.toEpochDay();
+        this.toDay = to.toEpochDay();
+    }
+
+    /** True if the expense file's records are in recency order, as streaming needs. */
+    static boolean inDateOrder(File file) throws IOException {
+        try (LedgerCodec.ExpenseReader in = LedgerCodec.openExpenses(file)) {
+            Expense previous = null;
+            Expense expense;
+            while ((expense = in.next()) != null) {
+                if (previous != null && ExpensePage.RECENCY.compare(previous, expense) > 0) {
+                    return false;
+                }
+                previous = expense;
+            }
+            return true;
+        }
+    }
+
+    /** Up to limit further expenses accepted by the filter (null accepts all). */
+    public ExpensePage nextPage(Predicate<Expense> filter, int limit) {
+        try {
+            if (pending == null) {
+                pending = nextMatch(filter);
+            }
+            List<Expense> result = new ArrayList<>();
+            while (pending != null && result.size() < limit) {
+                result.add(pending);
+                pending = nextMatch(filter);
+            }
+            return new ExpensePage(result, pending != null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read expenses", e);
+        }
+    }
+
+    private Expense nextMatch(Predicate<Expense> filter) throws IOException {
+        Expense expense;
+        while ((expense = nextMerged()) != null) {
+            long day = expense.getDate().toEpochDay();
+            if (day > toDay) {
+                return null;
+            }
+            if (day >= fromDay && (filter == null || filter.test(expense))) {
+                return expense;
+            }
+        }
+        return null;
+    }
+
+    private Expense nextMerged() throws IOException {
+        if (stored == null) {
+            stored = nextStored();
+        }
+        if (stored != null && (journalledHead == null
+                || ExpensePage.RECENCY.compare(stored, journalledHead) <= 0)) {
+            Expense expense = stored;
+            stored = null;
+            return expense;
+        }
+        Expense expense = journalledHead;
+        journalledHead = journalled.hasNext() ? journalled.next() : null;
+        return expense;
+    }
+
+    // The next snapshot record the journal has not replaced or deleted
+    private Expense nextStored() throws IOException {
+        if (snapshot == null) {
+            return null;
+        }
+        Expense expense;
+        do {
+            expense = snapshot.next();
+        } while (expense != null && changed.containsKey(expense.getId()));
+        return expense;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshot != null) {
+            snapshot.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces fsyncs for journal appends. Writers append to their channel and
+ * then call {@link #sync(FileChannel)}, which returns once that channel has
+ * been forced; they must release any lock the next writer needs first, or
+ * that writer cannot append in time to join the batch. A writer that finds no fsync in progress forces its channel
+ * itself, straight away. Writers arriving while an fsync is in progress
+ * queue up and are forced by a background thread as one batch, sharing a
+ * single fsync per channel; when several are already waiting, it holds the
+ * batch open for the commit window so more can join. Durable throughput
+ * thus grows with concurrency, while a lone writer never waits.
+ */
+final class GroupCommitter {
+    private static final long DEFAULT_WINDOW_MICROS = 2000;
+
+    private static GroupCommitter shared;
+
+    private final long windowNanos;
+    private final Object lock = new Object();
+    private List<Request> pending = new ArrayList<>();
+    // An fsync, direct or batched, is running
+    private boolean forcing;
+
+    private static final class Request {
+        final FileChannel channel;
+        boolean done;
+        IOException failure;
+
+        Request(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    GroupCommitter(long windowMicros) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        Thread thread = new Thread(this::run, "group-commit");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized GroupCommitter shared() {
+        if (shared == null) {
+            shared = new GroupCommitter(DEFAULT_WINDOW_MICROS);
+        }
+        return shared;
+    }
+
+    public void sync(FileChannel channel) throws IOException {
+        Request request = new Request(channel);
+        synchronized (lock) {
+            if (!forcing && pending.isEmpty()) {
+                forcing = true;
+            } else {
+                pending.add(request);
+                lock.notifyAll();
+                while (!request.done) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for commit", e);
+                    }
+                }
+                if (request.failure != null) {
+                    throw request.failure;
+                }
+                return;
+            }
+        }
+        try {
+            channel.force(false);
+        } finally {
+            synchronized (lock) {
+                forcing = false;
+                // Hand writers that queued behind us to the background thread
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<Request> batch;
+            synchronized (lock) {
+                while (pending.isEmpty() || forcing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                // Writers are contending: give more a short window to join this batch
+                long deadline = System.nanoTime() + (pending.size() > 1 ? windowNanos : 0);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                forcing = true;
+            }
+
+            Map<FileChannel, IOException> results = new IdentityHashMap<>();
+            for (Request request : batch) {
+                if (!results.containsKey(request.channel)) {
+                    IOException failure = null;
+                    try {
+                        request.channel.force(false);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                    results.put(request.channel, failure);
+                }
+            }
+
+            synchronized (lock) {
+                for (Request request : batch) {
+                    request.failure = results.get(request.channel);
+                    request.done = true;
+                }
+                forcing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+}
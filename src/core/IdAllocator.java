@@ -0,0 +1,95 @@
+package core;
+
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-user expense id sequences. Each process reserves ids in blocks: the
+ * user's high-water mark in data/expenses/<user>.seq is advanced by a whole
+ * block under a cross-process lock, and ids inside the block are then
+ * handed out with a single atomic increment. Ids are unique and increasing
+ * per process; ids left in a block when a process exits are never reused.
+ *
+ * Reservations are serialized per stripe of users, in process and across
+ * processes alike, so one user's first reservation, which may scan the
+ * user's expenses for a seed, does not hold up other users' allocations.
+ */
+class IdAllocator {
+    static final int BLOCK_SIZE = 32;
+    // Lock slots taken from the data directory lock, starting at firstSlot
+    static final int STRIPES = 16;
+
+    private final DataDirectoryLock directoryLock;
+    private final int firstSlot;
+    private final StripedLocks stripes = new StripedLocks(STRIPES);
+    // Seeds a user's sequence from existing data the first time it is used
+    private final ToIntFunction<String> maxExistingId;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    IdAllocator(DataDirectoryLock directoryLock, int firstSlot, ToIntFunction<String> maxExistingId) {
+        this.directoryLock = directoryLock;
+        this.firstSlot = firstSlot;
+        this.maxExistingId = maxExistingId;
+    }
+
+    public int next(String username) {
+        while (true) {
+            Block block = blocks.get(username);
+            if (block != null) {
+                int id = block.next.getAndIncrement();
+                if (id < block.limit) {
+                    return id;
+                }
+            }
+            reserve(username, block);
+        }
+    }
+
+    @SuppressWarnings("try") // the lock is only held, never referenced
+    private void reserve(String username, Block exhausted) {
+        Lock stripe = stripes.forKey(username).writeLock();
+        stripe.lock();
+        try {
+            if (blocks.get(username) != exhausted) {
+                return; // Another thread already reserved a fresh block
+            }
+            File file = sequenceFile(username);
+            try (FileLock lock = directoryLock.lock(firstSlot + stripes.indexOf(username))) {
+                int highWater = file.exists() ? readHighWater(file) : maxExistingId.applyAsInt(username);
+                int limit = Math.addExact(highWater, BLOCK_SIZE);
+                AtomicFile.write(file, out -> new DataOutputStream(out).writeInt(limit));
+                blocks.put(username, new Block(highWater + 1, limit + 1));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot reserve expense ids for " + username, e);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private static int readHighWater(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt();
+        }
+    }
+
+    private static File sequenceFile(String username) {
+        return new File(ExpensePartition.PARTITION_DIR, username + ".seq");
+    }
+
+    private static final class Block {
+        final AtomicInteger next;
+        // Exclusive upper bound
+        final int limit;
+
+        Block(int first, int limit) {
+            this.next = new AtomicInteger(first);
+            this.limit = limit;
+        }
+    }
+}
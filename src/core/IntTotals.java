@@ -0,0 +1,101 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from an int key to a running sum in minor units and
+ * a count, with no boxing of keys or values. Keys whose count drops to
+ * zero stay in the table with zero totals and are skipped when iterated.
+ * Integer.MIN_VALUE is reserved and cannot be used as a key.
+ *
+ * Not thread-safe.
+ */
+final class IntTotals {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private long[] sums;
+    private int[] counts;
+    private int used;
+
+    IntTotals() {
+        this(16);
+    }
+
+    IntTotals(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        sums = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    public void add(int key, long amount, int count) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            if ((used + 1) * 4 > keys.length * 3) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            used++;
+        }
+        sums[slot] += amount;
+        counts[slot] += count;
+    }
+
+    public long sum(int key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : sums[slot];
+    }
+
+    public int count(int key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    /** Keys with a non-zero count, in no particular order. */
+    public int[] keys() {
+        int[] live = new int[keys.length];
+        int size = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && counts[slot] != 0) {
+                live[size++] = keys[slot];
+            }
+        }
+        return Arrays.copyOf(live, size);
+    }
+
+    // Slot holding the key, or the empty slot where it would go
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldSums = sums;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        sums = new long[keys.length];
+        counts = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
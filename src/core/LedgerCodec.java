@@ -0,0 +1,315 @@
+package core;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Versioned binary format for users, categories, expenses and the
+ * per-user expense aggregates.
+ *
+ * A file starts with a 4-byte magic, a version varint and a record count,
+ * followed by the records. Expenses store their category by id only; the
+ * id is resolved through the CategoryRegistry when displayed. Files written with
+ * Java serialization (the pre-codec format) are recognised by their stream
+ * magic and still readable, so they can be upgraded in place.
+ */
+final class LedgerCodec {
+    static final int MAGIC = 0x45544B52; // "ETKR"
+    // Version 2 stores expense amounts as minor units instead of doubles
+    static final int VERSION = 2;
+
+    // First two bytes of a java.io.ObjectOutputStream stream
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    private LedgerCodec() {
+    }
+
+    // Format detection
+
+    public static boolean isLegacy(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readUnsignedShort() == JAVA_SERIALIZATION_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isLegacy(byte[] payload) {
+        return payload.length >= 2
+            && ((payload[0] & 0xFF) << 8 | (payload[1] & 0xFF)) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    // Whole files
+
+    public static List<User> readUsers(File file) throws IOException {
+        if (isLegacy(file)) {
+            return readLegacyList(file);
+        }
+        try (RecordReader in = openReader(file)) {
+            int count = in.readVarInt();
+            List<User> users = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                users.add(readUser(in));
+            }
+            return users;
+        }
+    }
+
+    public static void writeUsers(File file, Collection<User> users) throws IOException {
+        AtomicFile.write(file, stream -> {
+            RecordWriter out = new RecordWriter(stream);
+            writeHeader(out);
+            out.writeVarInt(users.size());
+            for (User user : users) {
+                writeUser(out, user);
+            }
+            out.flush();
+        });
+    }
+
+    public static List<Category> readCategories(File file) throws IOException {
+        if (isLegacy(file)) {
+            return readLegacyList(file);
+        }
+        try (RecordReader in = openReader(file)) {
+            int count = in.readVarInt();
+            List<Category> categories = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                categories.add(readCategory(in));
+            }
+            return categories;
+        }
+    }
+
+    public static void writeCategories(File file, Collection<Category> categories) throws IOException {
+        AtomicFile.write(file, stream -> {
+            RecordWriter out = new RecordWriter(stream);
+            writeHeader(out);
+            out.writeVarInt(categories.size());
+            for (Category category : categories) {
+                writeCategory(out, category);
+            }
+            out.flush();
+        });
+    }
+
+    public static List<Expense> readExpenses(File file) throws IOException {
+        if (isLegacy(file)) {
+            return readLegacyList(file);
+        }
+        try (RecordReader in = openReader(file)) {
+            int count = in.readVarInt();
+            List<Expense> expenses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                expenses.add(readExpense(in));
+            }
+            return expenses;
+        }
+    }
+
+    /** Opens an expense file to be read one record at a time; legacy files can only be read whole. */
+    public static ExpenseReader openExpenses(File file) throws IOException {
+        RecordReader in = openReader(file);
+        try {
+            return new ExpenseReader(in, in.readVarInt());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /** Sequential reader over the records of an expense file. */
+    static final class ExpenseReader implements Closeable {
+        private final RecordReader in;
+        private int remaining;
+
+        private ExpenseReader(RecordReader in, int count) {
+            this.in = in;
+            this.remaining = count;
+        }
+
+        /** The next expense, or null after the last. */
+        public Expense next() throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            return readExpense(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public static void writeExpenses(File file, Collection<Expense> expenses) throws IOException {
+        AtomicFile.write(file, stream -> {
+            RecordWriter out = new RecordWriter(stream);
+            writeHeader(out);
+            out.writeVarInt(expenses.size());
+            for (Expense expense : expenses) {
+                writeExpense(out, expense);
+            }
+            out.flush();
+        });
+    }
+
+    /** @return the saved aggregates, or null if they were written by an older version */
+    public static ExpenseAggregates readAggregates(File file) throws IOException {
+        try (RecordReader in = openReader(file)) {
+            // Aggregates are derived data; older layouts are rebuilt rather than converted
+            return in.getVersion() == VERSION ? ExpenseAggregates.read(in) : null;
+        }
+    }
+
+    public static void writeAggregates(File file, ExpenseAggregates aggregates) throws IOException {
+        AtomicFile.write(file, stream -> {
+            RecordWriter out = new RecordWriter(stream);
+            writeHeader(out);
+            aggregates.write(out);
+            out.flush();
+        });
+    }
+
+    public static TextIndex readTextIndex(File file) throws IOException {
+        try (RecordReader in = openReader(file)) {
+            return in.getVersion() == VERSION ? TextIndex.read(in) : null;
+        }
+    }
+
+    public static void writeTextIndex(File file, TextIndex index) throws IOException {
+        AtomicFile.write(file, stream -> {
+            RecordWriter out = new RecordWriter(stream);
+            writeHeader(out);
+            index.write(out);
+            out.flush();
+        });
+    }
+
+    // Single records, used for journal payloads
+
+    public static byte[] encodeExpense(Expense expense) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (RecordWriter out = new RecordWriter(bytes)) {
+            writeExpense(out, expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Decodes a journal payload written by {@link #encodeExpense} at the given version. */
+    public static Expense decodeExpense(byte[] payload, int version) throws IOException {
+        if (isLegacy(payload)) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                return (Expense) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+        try (RecordReader in = new RecordReader(new ByteArrayInputStream(payload))) {
+            in.setVersion(version);
+            return readExpense(in);
+        }
+    }
+
+    // Record layouts
+
+    private static void writeUser(RecordWriter out, User user) throws IOException {
+        out.writeString(user.getUsername());
+        out.writeString(user.getPassword());
+        out.writeString(user.getEmail());
+        out.writeString(user.getFullName());
+        out.writeDouble(user.getMonthlyBudget());
+        out.writeTimestamp(user.getCreatedAt());
+    }
+
+    private static User readUser(RecordReader in) throws IOException {
+        User user = new User(in.readString(), in.readString(), in.readString(), in.readString());
+        user.setMonthlyBudget(in.readDouble());
+        user.setCreatedAt(in.readTimestamp());
+        return user;
+    }
+
+    private static void writeCategory(RecordWriter out, Category category) throws IOException {
+        out.writeVarInt(category.getId());
+        out.writeString(category.getName());
+        out.writeString(category.getDescription());
+        out.writeString(category.getColorCode());
+        out.writeDouble(category.getBudgetLimit());
+    }
+
+    private static Category readCategory(RecordReader in) throws IOException {
+        Category category = new Category(in.readVarInt(), in.readString(),
+            in.readString(), in.readString());
+        category.setBudgetLimit(in.readDouble());
+        return category;
+    }
+
+    private static void writeExpense(RecordWriter out, Expense expense) throws IOException {
+        out.writeVarInt(expense.getId());
+        out.writeString(expense.getUsername());
+        out.writeString(expense.getTitle());
+        out.writeString(expense.getDescription());
+        out.writeSignedVarLong(expense.getAmount());
+        out.writeVarInt(expense.getCategoryId());
+        out.writeDate(expense.getDate());
+        // Payment method ordinal and recurring flag share one byte
+        out.writeByte(expense.getPaymentMethod().ordinal() << 1 | (expense.isRecurring() ? 1 : 0));
+        out.writeTimestamp(expense.getCreatedAt());
+    }
+
+    private static Expense readExpense(RecordReader in) throws IOException {
+        int id = in.readVarInt();
+        String username = in.readString();
+        String title = in.readString();
+        String description = in.readString();
+        long amount = in.getVersion() >= 2 ? in.readSignedVarLong() : Money.fromMajor(in.readDouble());
+        int categoryId = in.readVarInt();
+
+        Expense expense = new Expense(id, username, title, amount, categoryId, in.readDate());
+        expense.setDescription(description);
+
+        int flags = in.readByte();
+        expense.setPaymentMethod(Expense.PaymentMethod.values()[flags >> 1]);
+        expense.setRecurring((flags & 1) != 0);
+        expense.setCreatedAt(in.readTimestamp());
+        return expense;
+    }
+
+    // Headers
+
+    private static void writeHeader(RecordWriter out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeVarInt(VERSION);
+    }
+
+    private static RecordReader openReader(File file) throws IOException {
+        RecordReader in = new RecordReader(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a ledger file: " + file);
+            }
+            int version = in.readVarInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported ledger version " + version + ": " + file);
+            }
+            in.setVersion(version);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> readLegacyList(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return (List<T>) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package core;
+
+import java.io.*;
+
+/**
+ * Converts data files written with Java serialization to the binary ledger
+ * format. Database upgrades files lazily as they are loaded; this tool does
+ * the whole data directory in one go.
+ *
+ * Usage: java core.LegacyConverter
+ */
+public class LegacyConverter {
+
+    public static void main(String[] args) {
+        // Opening the database splits a legacy expenses.dat into partitions
+        Database.getInstance();
+
+        int converted = 0;
+
+        try {
+            if (convertCategories(new File("data/categories.dat"))) converted++;
+            if (convertUsers(new File("data/users.dat"))) converted++;
+
+            File[] partitions = new File(ExpensePartition.PARTITION_DIR)
+                .listFiles((dir, name) -> name.endsWith(".dat"));
+            if (partitions != null) {
+                for (File partition : partitions) {
+                    if (convertExpenses(partition)) converted++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+
+        System.out.println("Converted " + converted + " legacy file(s).");
+    }
+
+    private static boolean convertUsers(File file) throws IOException {
+        if (!LedgerCodec.isLegacy(file)) {
+            return false;
+        }
+        LedgerCodec.writeUsers(file, LedgerCodec.readUsers(file));
+        return true;
+    }
+
+    private static boolean convertCategories(File file) throws IOException {
+        if (!LedgerCodec.isLegacy(file)) {
+            return false;
+        }
+        LedgerCodec.writeCategories(file, LedgerCodec.readCategories(file));
+        return true;
+    }
+
+    private static boolean convertExpenses(File file) throws IOException {
+        if (!LedgerCodec.isLegacy(file)) {
+            return false;
+        }
+        LedgerCodec.writeExpenses(file, LedgerCodec.readExpenses(file));
+        return true;
+    }
+}
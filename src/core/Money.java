@@ -0,0 +1,48 @@
+package core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money is held as a long count of minor units (cents) everywhere in core,
+ * so totals are exact and aggregation loops add primitives. This class
+ * converts at the edges: parsing user input, reading pre-fixed-point data,
+ * and formatting for display.
+ */
+public final class Money {
+    /** Decimal places of the minor unit. */
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /** Rounds a major-unit amount (e.g. 12.345 dollars) to the nearest minor unit. */
+    public static long fromMajor(double major) {
+        return Math.round(major * MINOR_PER_MAJOR);
+    }
+
+    public static double toMajor(long minor) {
+        return (double) minor / MINOR_PER_MAJOR;
+    }
+
+    /**
+     * Parses a decimal amount such as "12.5" exactly, rounding half up
+     * beyond {@link #SCALE} places.
+     *
+     * @throws NumberFormatException if the text is not a number or out of range
+     */
+    public static long parse(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(SCALE, RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /** Formats without a currency symbol, e.g. 123456 as "1234.56". */
+    public static String format(long minor) {
+        return BigDecimal.valueOf(minor, SCALE).toPlainString();
+    }
+}
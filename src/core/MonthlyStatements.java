@@ -0,0 +1,98 @@
+package core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Batch job writing a monthly statement for every user with expenses in
+ * the month: each expense, subtotals per category and the month's total,
+ * followed by a platform-wide summary.
+ *
+ * Users are picked from one parallel pass over the column store. Their
+ * statements are rendered in parallel a batch at a time and written in
+ * user name order as each batch completes. Each user's expenses are read
+ * through a throwaway partition rather than made resident, so memory stays
+ * bounded by the batch's partitions no matter how many users there are.
+ */
+public class MonthlyStatements {
+    // Statements rendered ahead of the writer
+    private static final int BATCH_SIZE = 64;
+
+    private final Database db;
+
+    public MonthlyStatements() {
+        this.db = Database.getInstance();
+    }
+
+    /**
+     * Writes the statements for the month to out, flushing after each batch.
+     * @return the number of statements written
+     */
+    public int write(YearMonth month, Writer out) throws IOException {
+        PlatformSpend spend = db.getPlatformSpend(month.atDay(1), month.atEndOfMonth());
+        List<String> usernames = spend.getUsernames();
+
+        for (int start = 0; start < usernames.size(); start += BATCH_SIZE) {
+            List<String> statements = usernames.subList(start, Math.min(start + BATCH_SIZE, usernames.size()))
+                .parallelStream()
+                .map(username -> render(username, month))
+                .collect(Collectors.toList());
+            for (String statement : statements) {
+                out.write(statement);
+            }
+            out.flush();
+        }
+
+        writeSummary(month, spend, usernames.size(), out);
+        out.flush();
+        return usernames.size();
+    }
+
+    private String render(String username, YearMonth month) {
+        StringBuilder statement = new StringBuilder();
+        User user = db.getUser(username);
+        statement.append("═".repeat(72)).append('\n');
+        statement.append(String.format("STATEMENT %s  %s%s\n", month, username,
+            user != null ? " (" + user.getFullName() + ", " + user.getEmail() + ")" : ""));
+        statement.append("─".repeat(72)).append('\n');
+
+        SortedMap<Integer, long[]> categoryTotals = new TreeMap<>();
+        long total = 0;
+        int count = 0;
+        for (Expense expense : db.readUserExpensesBetween(username, month.atDay(1), month.atEndOfMonth())) {
+            statement.append(String.format("%s  %-30.30s %-15.15s %12s\n", expense.getDate(), expense.getTitle(),
+                expense.getCategory().getName(), Money.format(expense.getAmount())));
+            long[] category = categoryTotals.computeIfAbsent(expense.getCategoryId(), id -> new long[2]);
+            category[0]++;
+            category[1] += expense.getAmount();
+            total += expense.getAmount();
+            count++;
+        }
+
+        statement.append("─".repeat(72)).append('\n');
+        for (Map.Entry<Integer, long[]> entry : categoryTotals.entrySet()) {
+            statement.append(String.format("%-30s %5d expenses %20s\n",
+                CategoryRegistry.current().resolve(entry.getKey()).getName(),
+                entry.getValue()[0], Money.format(entry.getValue()[1])));
+        }
+        statement.append(String.format("%-30s %5d expenses %20s\n\n", "TOTAL", count, Money.format(total)));
+        return statement.toString();
+    }
+
+    private void writeSummary(YearMonth month, PlatformSpend spend, int users, Writer out) throws IOException {
+        out.write("═".repeat(72) + "\n");
+        out.write(String.format("PLATFORM SUMMARY %s  %d users, %d expenses, %s\n",
+            month, users, spend.getCount(), Money.format(spend.getTotal())));
+        out.write("─".repeat(72) + "\n");
+        long[] categoryTotals = spend.getCategoryTotals();
+        for (int id = 0; id < categoryTotals.length; id++) {
+            if (categoryTotals[id] != 0) {
+                out.write(String.format("%-30s %41s\n",
+                    CategoryRegistry.current().resolve(id).getName(), Money.format(categoryTotals[id])));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package core;
+
+import java.util.*;
+
+/**
+ * Counts and totals of every user's expenses over a date range, per user
+ * and category, from one parallel pass over the column store. Obtain one
+ * from {@link Database#getPlatformSpend}. Amounts are minor units, see
+ * {@link Money}.
+ */
+public class PlatformSpend {
+    private final ColumnStore.Totals totals;
+    private final Map<String, Integer> userOrdinals = new HashMap<>();
+
+    PlatformSpend(ColumnStore.Totals totals) {
+        this.totals = totals;
+        for (int user = 0; user < totals.usernames.length; user++) {
+            userOrdinals.put(totals.usernames[user], user);
+        }
+    }
+
+    /** Users with at least one expense in the range, in name order. */
+    public List<String> getUsernames() {
+        List<String> usernames = new ArrayList<>();
+        for (int user = 0; user < totals.usernames.length; user++) {
+            if (getUserCount(user) > 0) {
+                usernames.add(totals.usernames[user]);
+            }
+        }
+        Collections.sort(usernames);
+        return usernames;
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long sum : totals.sums) {
+            total += sum;
+        }
+        return total;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (long cellCount : totals.counts) {
+            count += cellCount;
+        }
+        return count;
+    }
+
+    /** Totals over all users indexed by category id; categories without expenses are 0. */
+    public long[] getCategoryTotals() {
+        long[] categoryTotals = new long[totals.categoryCount];
+        for (int cell = 0; cell < totals.sums.length; cell++) {
+            categoryTotals[cell % totals.categoryCount] += totals.sums[cell];
+        }
+        return categoryTotals;
+    }
+
+    public long getUserTotal(String username) {
+        Integer user = userOrdinals.get(username);
+        long total = 0;
+        for (int category = 0; user != null && category < totals.categoryCount; category++) {
+            total += totals.sums[user * totals.categoryCount + category];
+        }
+        return total;
+    }
+
+    public long getUserCount(String username) {
+        Integer user = userOrdinals.get(username);
+        return user != null ? getUserCount(user) : 0;
+    }
+
+    /** The user's totals indexed by category id; categories without expenses are 0. */
+    public long[] getUserCategoryTotals(String username) {
+        Integer user = userOrdinals.get(username);
+        if (user == null) {
+            return new long[totals.categoryCount];
+        }
+        int start = user * totals.categoryCount;
+        return Arrays.copyOfRange(totals.sums, start, start + totals.categoryCount);
+    }
+
+    public long getUserCategoryCount(String username, int categoryId) {
+        Integer user = userOrdinals.get(username);
+        return user != null && categoryId >= 0 && categoryId < totals.categoryCount
+            ? totals.counts[user * totals.categoryCount + categoryId] : 0;
+    }
+
+    private long getUserCount(int user) {
+        long count = 0;
+        for (int category = 0; category < totals.categoryCount; category++) {
+            count += totals.counts[user * totals.categoryCount + category];
+        }
+        return count;
+    }
+}
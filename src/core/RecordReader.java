@@ -0,0 +1,101 @@
+package core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Reads the primitives written by {@link RecordWriter}. Each reader keeps
+ * its own string dictionary, so a reader must consume exactly the stream
+ * produced by one writer.
+ */
+class RecordReader implements Closeable {
+    private final DataInputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    // Format version from the file header, for layouts that changed between versions
+    private int version;
+
+    RecordReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int readByte() throws IOException {
+        return in.readUnsignedByte();
+    }
+
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+        }
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+
+    public LocalDate readDate() throws IOException {
+        return LocalDate.ofEpochDay(readSignedVarLong());
+    }
+
+    public LocalDateTime readTimestamp() throws IOException {
+        return LocalDateTime.ofEpochSecond(readSignedVarLong(), 0, ZoneOffset.UTC);
+    }
+
+    public String readString() throws IOException {
+        int ref = readVarInt();
+        if (ref == RecordWriter.STRING_NULL) {
+            return null;
+        }
+        if (ref == RecordWriter.STRING_LITERAL) {
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+        int index = ref - RecordWriter.STRING_REF_BASE;
+        if (index >= dictionary.size()) {
+            throw new IOException("Unknown string reference: " + ref);
+        }
+        return dictionary.get(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,89 @@
+package core;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Writes the primitives of the ledger binary format: LEB128 varints,
+ * zig-zag signed varints, epoch-day dates, epoch-second timestamps and
+ * dictionary-coded strings. A string is written in full the first time it
+ * is seen by this writer and as a back-reference afterwards.
+ */
+class RecordWriter implements Closeable {
+    // String references: 0 = null, 1 = literal follows, n >= 2 = dictionary entry n - 2
+    static final int STRING_NULL = 0;
+    static final int STRING_LITERAL = 1;
+    static final int STRING_REF_BASE = 2;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    RecordWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    public void writeByte(int value) throws IOException {
+        out.writeByte(value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeDouble(double value) throws IOException {
+        out.writeDouble(value);
+    }
+
+    public void writeDate(LocalDate date) throws IOException {
+        writeSignedVarLong(date.toEpochDay());
+    }
+
+    public void writeTimestamp(LocalDateTime timestamp) throws IOException {
+        writeSignedVarLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(STRING_NULL);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarInt(STRING_REF_BASE + index);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        writeVarInt(STRING_LITERAL);
+        byte[] bytes = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,171 @@
+package core;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Summary statistics over a set of expenses, overall and per group, built
+ * in a single pass. Report screens take what they need from one Report
+ * instead of issuing a separate query per number. Reports rolled up from
+ * the expense cube carry the same numbers but no argmax/argmin expenses.
+ *
+ * @param <K> the group key, e.g. Category for {@link Grouping#CATEGORY}
+ */
+public class Report<K> {
+
+    /** How expenses are grouped, with the key type each grouping produces. */
+    public static final class Grouping<K> {
+        public static final Grouping<Category> CATEGORY = new Grouping<>(
+            Expense::getCategory, (month, categoryId, method) -> CategoryRegistry.current().resolve(categoryId),
+            Comparator.comparingInt(Category::getId));
+        /** Not available from the cube, which is kept per month. */
+        public static final Grouping<LocalDate> DAY = new Grouping<>(
+            Expense::getDate, null, Comparator.naturalOrder());
+        public static final Grouping<YearMonth> MONTH = new Grouping<>(
+            expense -> YearMonth.from(expense.getDate()), (month, categoryId, method) -> month,
+            Comparator.<YearMonth>naturalOrder());
+        /** Keyed by the first month of each quarter. */
+        public static final Grouping<YearMonth> QUARTER = new Grouping<>(
+            expense -> quarterOf(YearMonth.from(expense.getDate())), (month, categoryId, method) -> quarterOf(month),
+            Comparator.<YearMonth>naturalOrder());
+        public static final Grouping<Year> YEAR = new Grouping<>(
+            expense -> Year.of(expense.getDate().getYear()), (month, categoryId, method) -> Year.of(month.getYear()),
+            Comparator.<Year>naturalOrder());
+        public static final Grouping<Expense.PaymentMethod> PAYMENT_METHOD = new Grouping<>(
+            Expense::getPaymentMethod, (month, categoryId, method) -> method, Comparator.naturalOrder());
+
+        // Key of a cube cell, for groupings the cube can roll up to
+        interface CellKey<K> {
+            K of(YearMonth month, int categoryId, Expense.PaymentMethod method);
+        }
+
+        private final Function<Expense, K> key;
+        private final CellKey<K> cellKey;
+        private final Comparator<K> order;
+
+        private Grouping(Function<Expense, K> key, CellKey<K> cellKey, Comparator<K> order) {
+            this.key = key;
+            this.cellKey = cellKey;
+            this.order = order;
+        }
+
+        private static YearMonth quarterOf(YearMonth month) {
+            return month.withMonth((month.getMonthValue() - 1) / 3 * 3 + 1);
+        }
+    }
+
+    /**
+     * Sum, count, min, max and mean of one group, plus the expenses at the
+     * extremes. Amounts are minor units, see {@link Money}.
+     */
+    public static class GroupStats {
+        private long sum;
+        private int count;
+        private long max = Long.MIN_VALUE;
+        private long min = Long.MAX_VALUE;
+        private Expense highest;
+        private Expense lowest;
+
+        void add(Expense expense) {
+            long amount = expense.getAmount();
+            sum += amount;
+            count++;
+            if (highest == null || amount > highest.getAmount()) {
+                highest = expense;
+            }
+            if (lowest == null || amount < lowest.getAmount()) {
+                lowest = expense;
+            }
+            max = Math.max(max, amount);
+            min = Math.min(min, amount);
+        }
+
+        // Folds in a pre-aggregated group, which has no expenses to point at
+        void merge(long sum, int count, long min, long max) {
+            this.sum += sum;
+            this.count += count;
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+        }
+
+        public long getSum() { return sum; }
+        public int getCount() { return count; }
+        public long getMax() { return count > 0 ? max : 0; }
+        public long getMin() { return count > 0 ? min : 0; }
+        
+        /** Mean rounded to the nearest minor unit. */
+        public long getMean() { return count > 0 ? Math.round((double) sum / count) : 0; }
+
+        /**
+         * The first expense with the largest amount, or null if the group is
+         * empty or the report was rolled up from the cube.
+         */
+        public Expense getArgMax() { return highest; }
+
+        /**
+         * The first expense with the smallest amount, or null if the group is
+         * empty or the report was rolled up from the cube.
+         */
+        public Expense getArgMin() { return lowest; }
+
+        /** This group's share of the given total, in percent. */
+        public double getPercentageOf(long total) {
+            return total != 0 ? (double) sum / total * 100 : 0;
+        }
+    }
+
+    private final GroupStats overall = new GroupStats();
+    private final SortedMap<K, GroupStats> groups;
+    private final Grouping<K> grouping;
+
+    private Report(Grouping<K> grouping) {
+        this.groups = new TreeMap<>(grouping.order);
+        this.grouping = grouping;
+    }
+
+    // A report to be filled with cube cells
+    static <K> Report<K> empty(Grouping<K> grouping) {
+        if (grouping.cellKey == null) {
+            throw new IllegalArgumentException("Grouping is finer than the cube's months");
+        }
+        return new Report<>(grouping);
+    }
+
+    void addCell(YearMonth month, int categoryId, Expense.PaymentMethod method,
+            long sum, int count, long min, long max) {
+        overall.merge(sum, count, min, max);
+        groups.computeIfAbsent(grouping.cellKey.of(month, categoryId, method), k -> new GroupStats())
+            .merge(sum, count, min, max);
+    }
+
+    public static <K> Report<K> of(Iterable<Expense> expenses, Grouping<K> grouping) {
+        Report<K> report = new Report<>(grouping);
+        for (Expense expense : expenses) {
+            report.overall.add(expense);
+            report.groups.computeIfAbsent(grouping.key.apply(expense), k -> new GroupStats()).add(expense);
+        }
+        return report;
+    }
+
+    public GroupStats getOverall() {
+        return overall;
+    }
+
+    /** Groups in key order; only keys with at least one expense appear. */
+    public SortedMap<K, GroupStats> getGroups() {
+        return Collections.unmodifiableSortedMap(groups);
+    }
+
+    /** Stats for one key, empty if no expense fell into it. */
+    public GroupStats getGroup(K key) {
+        GroupStats stats = groups.get(key);
+        return stats != null ? stats : new GroupStats();
+    }
+
+    public boolean isEmpty() {
+        return overall.count == 0;
+    }
+}
@@ -0,0 +1,139 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Map from a (user ordinal, expense id) key to its column store row, as an
+ * open-addressing hash table of primitive slots held off-heap: 12 bytes a
+ * slot instead of a boxed map entry per row, and nothing for the garbage
+ * collector to trace however many rows there are. Linear probing; removal
+ * shifts the following run back, so there are no tombstones.
+ *
+ * Not thread-safe; guarded by the column store's lock.
+ */
+final class RowIndex {
+    static final int ABSENT = -1;
+
+    // No user has ordinal -1, so no real key is all ones
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.7;
+
+    private ByteBuffer keys;
+    private ByteBuffer rows;
+    private int mask;
+    private int size;
+
+    RowIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /** The row for the key, or ABSENT. */
+    public int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long found = keys.getLong(slot * Long.BYTES);
+            if (found == key) {
+                return rows.getInt(slot * Integer.BYTES);
+            }
+            if (found == EMPTY) {
+                return ABSENT;
+            }
+        }
+    }
+
+    /** Maps the key to the row, returning the row it replaced or ABSENT. */
+    public int put(long key, int row) {
+        if (size + 1 > (mask + 1) * MAX_LOAD) {
+            resize((mask + 1) * 2);
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long found = keys.getLong(slot * Long.BYTES);
+            if (found == key) {
+                int previous = rows.getInt(slot * Integer.BYTES);
+                rows.putInt(slot * Integer.BYTES, row);
+                return previous;
+            }
+            if (found == EMPTY) {
+                keys.putLong(slot * Long.BYTES, key);
+                rows.putInt(slot * Integer.BYTES, row);
+                size++;
+                return ABSENT;
+            }
+        }
+    }
+
+    /** Removes the key, returning its row or ABSENT. */
+    public int remove(long key) {
+        int slot = slot(key);
+        while (true) {
+            long found = keys.getLong(slot * Long.BYTES);
+            if (found == EMPTY) {
+                return ABSENT;
+            }
+            if (found == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int removed = rows.getInt(slot * Integer.BYTES);
+        // Move back any later entry of the run whose home slot is not between the hole and it
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long moved = keys.getLong(next * Long.BYTES);
+            if (moved == EMPTY) {
+                break;
+            }
+            int home = slot(moved);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys.putLong(hole * Long.BYTES, moved);
+                rows.putInt(hole * Integer.BYTES, rows.getInt(next * Integer.BYTES));
+                hole = next;
+            }
+        }
+        keys.putLong(hole * Long.BYTES, EMPTY);
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void resize(int capacity) {
+        ByteBuffer oldKeys = keys;
+        ByteBuffer oldRows = rows;
+        int oldCapacity = mask + 1;
+        allocate(capacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long key = oldKeys.getLong(slot * Long.BYTES);
+            if (key != EMPTY) {
+                put(key, oldRows.getInt(slot * Integer.BYTES));
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder());
+        rows = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+        for (int slot = 0; slot < capacity; slot++) {
+            keys.putLong(slot * Long.BYTES, EMPTY);
+        }
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    // Spreads the key's bits (the MurmurHash3 finalizer) before masking
+    private int slot(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53a87ddL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,26 @@
+package core;
+
+import java.nio.ByteBuffer;
+
+/** One row at a time; the fallback when vector kernels are unavailable. */
+final class ScalarColumnKernels implements ColumnKernels {
+    @Override
+    public void countAndSum(ByteBuffer users, ByteBuffer days, ByteBuffer categories, ByteBuffer amounts,
+                            int from, int to, int minUser, int maxUser, int fromDay, int toDay,
+                            int minCategory, int maxCategory, long[] result) {
+        long count = 0;
+        long sum = 0;
+        for (int row = from; row < to; row++) {
+            int user = users.getInt(row * Integer.BYTES);
+            int day = days.getInt(row * Integer.BYTES);
+            int category = categories.getInt(row * Integer.BYTES);
+            if (user >= minUser && user <= maxUser && day >= fromDay && day <= toDay
+                    && category >= minCategory && category <= maxCategory) {
+                count++;
+                sum += amounts.getLong(row * Long.BYTES);
+            }
+        }
+        result[0] += count;
+        result[1] += sum;
+    }
+}
@@ -0,0 +1,48 @@
+package core;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of read/write locks selected by key hash. Different users
+ * usually map to different stripes and proceed in parallel, while the
+ * memory cost stays bounded no matter how many users there are.
+ */
+final class StripedLocks {
+    private final ReadWriteLock[] stripes;
+
+    StripedLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public ReadWriteLock forKey(String key) {
+        return stripes[indexOf(key)];
+    }
+
+    public int indexOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    public int size() {
+        return stripes.length;
+    }
+
+    /** Takes every write lock in stripe order, for operations that touch all users. */
+    public void lockAll() {
+        for (ReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+}
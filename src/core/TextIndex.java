@@ -0,0 +1,202 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Inverted index from the words of expense titles and descriptions to
+ * expense ids. Words are runs of letters and digits, lower-cased; a search
+ * term matches every word it is a prefix of, so results can follow the user
+ * as they type. Terms are kept sorted, so a prefix is one range of the term
+ * map rather than a scan of the vocabulary.
+ *
+ * Not thread-safe; owned by an ExpenseIndex.
+ */
+class TextIndex {
+    // Snapshot file this index was saved with, used to check it still applies on load
+    private long snapshotLength;
+    private long snapshotModified;
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private int documentCount;
+
+    TextIndex() {
+    }
+
+    TextIndex(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public void add(Expense expense) {
+        for (String word : words(expense)) {
+            terms.computeIfAbsent(word, w -> new Postings()).add(expense.getId());
+        }
+        documentCount++;
+    }
+
+    public void remove(Expense expense) {
+        for (String word : words(expense)) {
+            Postings postings = terms.get(word);
+            if (postings != null && postings.remove(expense.getId()) && postings.size == 0) {
+                terms.remove(word);
+            }
+        }
+        documentCount--;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Ids of expenses with, for every word of the text, some word starting
+     * with it. Text without words matches nothing.
+     */
+    public BitSet search(String text) {
+        BitSet result = null;
+        for (String term : tokenize(text)) {
+            BitSet matches = new BitSet();
+            for (Postings postings : terms.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                for (int i = 0; i < postings.size; i++) {
+                    matches.set(postings.ids[i]);
+                }
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? result : new BitSet();
+    }
+
+    /** The distinct lower-cased words of the text, in order of first appearance. */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * True if some word of the text starts with the term, ignoring case;
+     * the term must be a single word. Same matching as {@link #search},
+     * without allocating.
+     */
+    static boolean containsWordPrefix(String text, String term) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i + term.length() <= text.length(); i++) {
+            if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+                    && text.regionMatches(true, i, term, 0, term.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> words(Expense expense) {
+        Set<String> words = new HashSet<>(tokenize(expense.getTitle()));
+        words.addAll(tokenize(expense.getDescription()));
+        return words;
+    }
+
+    boolean matchesSnapshot(File snapshot) {
+        return snapshot.length() == snapshotLength && snapshot.lastModified() == snapshotModified;
+    }
+
+    void stampSnapshot(File snapshot) {
+        snapshotLength = snapshot.length();
+        snapshotModified = snapshot.lastModified();
+    }
+
+    void write(RecordWriter out) throws IOException {
+        out.writeVarLong(snapshotLength);
+        out.writeVarLong(snapshotModified);
+        out.writeVarInt(documentCount);
+        out.writeVarInt(terms.size());
+        for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+            Postings postings = entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeVarInt(postings.size);
+            // Ids are sorted, so gaps are small and encode in a byte or two
+            int previous = 0;
+            for (int i = 0; i < postings.size; i++) {
+                out.writeVarInt(postings.ids[i] - previous);
+                previous = postings.ids[i];
+            }
+        }
+    }
+
+    static TextIndex read(RecordReader in) throws IOException {
+        TextIndex index = new TextIndex();
+        index.snapshotLength = in.readVarLong();
+        index.snapshotModified = in.readVarLong();
+        index.documentCount = in.readVarInt();
+        int termCount = in.readVarInt();
+        for (int t = 0; t < termCount; t++) {
+            String term = in.readString();
+            Postings postings = new Postings();
+            postings.size = in.readVarInt();
+            postings.ids = new int[postings.size];
+            int previous = 0;
+            for (int i = 0; i < postings.size; i++) {
+                previous += in.readVarInt();
+                postings.ids[i] = previous;
+            }
+            index.terms.put(term, postings);
+        }
+        return index;
+    }
+
+    // Sorted expense ids for one term; new ids are usually the largest, so adds append
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(2, size * 2));
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package core;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Monthly totals and counts over a run of consecutive months, oldest first,
+ * with the derived series trend views show: average per day, change from
+ * the previous month and moving averages. Months without expenses are
+ * present with zeros. Amounts are minor units, see {@link Money}.
+ */
+public class Trend {
+    private final YearMonth first;
+    private final long[] totals;
+    private final int[] counts;
+
+    private Trend(YearMonth first, long[] totals, int[] counts) {
+        this.first = first;
+        this.totals = totals;
+        this.counts = counts;
+    }
+
+    // Months from first through last, filled from the cube's monthly roll-up
+    static Trend of(YearMonth first, YearMonth last, Report<YearMonth> report) {
+        int months = (int) first.until(last, ChronoUnit.MONTHS) + 1;
+        long[] totals = new long[months];
+        int[] counts = new int[months];
+        for (Map.Entry<YearMonth, Report.GroupStats> entry : report.getGroups().entrySet()) {
+            int index = (int) first.until(entry.getKey(), ChronoUnit.MONTHS);
+            if (index >= 0 && index < months) {
+                totals[index] = entry.getValue().getSum();
+                counts[index] = entry.getValue().getCount();
+            }
+        }
+        return new Trend(first, totals, counts);
+    }
+
+    public int size() {
+        return totals.length;
+    }
+
+    public YearMonth getMonth(int index) {
+        return first.plusMonths(index);
+    }
+
+    public long getTotal(int index) {
+        return totals[index];
+    }
+
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /** The month's total over its length in days, rounded to the nearest minor unit. */
+    public long getAveragePerDay(int index) {
+        return Math.round((double) totals[index] / getMonth(index).lengthOfMonth());
+    }
+
+    /** Change in total from the previous month; 0 for the first month. */
+    public long getChange(int index) {
+        return index > 0 ? totals[index] - totals[index - 1] : 0;
+    }
+
+    /** Change from the previous month in percent, or NaN if there is no previous total. */
+    public double getPercentChange(int index) {
+        return index > 0 && totals[index - 1] != 0
+            ? (double) getChange(index) / totals[index - 1] * 100 : Double.NaN;
+    }
+
+    /**
+     * Trailing moving average of the monthly totals over the given number of
+     * months. The first window - 1 months average over the months so far.
+     */
+    public long[] getMovingAverage(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        long[] averages = new long[totals.length];
+        long sum = 0;
+        for (int i = 0; i < totals.length; i++) {
+            sum += totals[i];
+            if (i >= window) {
+                sum -= totals[i - window];
+            }
+            averages[i] = Math.round((double) sum / Math.min(i + 1, window));
+        }
+        return averages;
+    }
+
+    public long getGrandTotal() {
+        long sum = 0;
+        for (long total : totals) {
+            sum += total;
+        }
+        return sum;
+    }
+
+    public int getTotalCount() {
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /** Mean monthly total, rounded to the nearest minor unit. */
+    public long getMonthlyAverage() {
+        return totals.length > 0 ? Math.round((double) getGrandTotal() / totals.length) : 0;
+    }
+
+    /** Index of the month with the largest total, or -1 if there are no months. */
+    public int getPeakIndex() {
+        int peak = totals.length > 0 ? 0 : -1;
+        for (int i = 1; i < totals.length; i++) {
+            if (totals[i] > totals[peak]) {
+                peak = i;
+            }
+        }
+        return peak;
+    }
+}
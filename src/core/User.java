@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 
 public class User implements Serializable {
+    private static final long serialVersionUID = 8662232673798727674L;
+    
     private String username;
     private String password;
     private String email;
@@ -37,6 +39,7 @@ public class User implements Serializable {
     public void setMonthlyBudget(double monthlyBudget) { this.monthlyBudget = monthlyBudget; }
     
     public LocalDateTime getCreatedAt() { return createdAt; }
+    void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
     @Override
     public String toString() {
@@ -139,14 +139,7 @@ public class CategoriesDialog extends JDialog {
             }
             
             int categoryId = (int) tableModel.getValueAt(selectedRow, 0);
-            List<Category> categories = expenseManager.getAllCategories();
-            
-            for (Category category : categories) {
-                if (category.getId() == categoryId) {
-                    category.setBudgetLimit(budget);
-                    break;
-                }
-            }
+            expenseManager.updateCategoryBudget(categoryId, budget);
             
             // Update table
             tableModel.setValueAt(String.format("$%.2f", budget), selectedRow, 3);
@@ -12,6 +12,8 @@ import java.util.*;
 import java.util.List;
 
 public class DashboardFrame extends JFrame {
+    private static final int RECENT_LIMIT = 50;
+    
     private AuthManager authManager;
     private ExpenseManager expenseManager;
     private User currentUser;
@@ -23,6 +25,9 @@ public class DashboardFrame extends JFrame {
     private JTable expensesTable;
     private DefaultTableModel tableModel;
     private JComboBox<String> filterComboBox;
+    private JTextField searchField;
+    private JLabel filterSummaryLabel;
+    private ExpenseQuery currentQuery = new ExpenseQuery().limit(RECENT_LIMIT);
     private JButton addExpenseButton, refreshButton, reportsButton, 
                     categoriesButton, logoutButton, profileButton;
     
@@ -319,8 +324,32 @@ public class DashboardFrame extends JFrame {
         ));
         filterComboBox.addActionListener(e -> filterExpenses());
         
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        searchLabel.setForeground(new Color(52, 73, 94));
+        
+        searchField = new JTextField(20);
+        searchField.setFont(new Font("Arial", Font.PLAIN, 13));
+        searchField.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(new Color(189, 195, 199), 1),
+            BorderFactory.createEmptyBorder(8, 10, 8, 10)
+        ));
+        // Search as the user types, within the selected filter
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { loadExpenses(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { loadExpenses(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { loadExpenses(); }
+        });
+        
         filterPanel.add(filterLabel);
         filterPanel.add(filterComboBox);
+        filterSummaryLabel = new JLabel();
+        filterSummaryLabel.setFont(new Font("Arial", Font.PLAIN, 13));
+        filterSummaryLabel.setForeground(new Color(52, 73, 94));
+        
+        filterPanel.add(searchLabel);
+        filterPanel.add(searchField);
+        filterPanel.add(filterSummaryLabel);
         
         // Table with FIXED HEADER COLOR (NOT WHITE)
         String[] columns = {"ID", "Title", "Amount", "Category", "Date", "Description"};
@@ -506,14 +535,20 @@ public class DashboardFrame extends JFrame {
     private void loadExpenses() {
         tableModel.setRowCount(0); // Clear table
         
-        List<Expense> expenses = expenseManager.getRecentExpenses(50);
+        currentQuery.containing(searchField.getText());
+        List<Expense> expenses = expenseManager.query(currentQuery);
+        
+        // The table may be limited; the summary covers everything the filter matches
+        long[] countAndTotal = expenseManager.countAndSum(currentQuery);
+        filterSummaryLabel.setText(String.format("%d expenses, $%s", 
+            countAndTotal[0], Money.format(countAndTotal[1])));
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         
         for (Expense expense : expenses) {
             Object[] row = {
                 expense.getId(),
                 expense.getTitle(),
-                String.format("$%.2f", expense.getAmount()),
+                "$" + Money.format(expense.getAmount()),
                 expense.getCategory().getName(),
                 expense.getDate().format(formatter),
                 expense.getDescription() != null ? expense.getDescription() : ""
@@ -524,16 +559,16 @@ public class DashboardFrame extends JFrame {
     
     private void updateStats() {
         double monthlyBudget = currentUser.getMonthlyBudget();
-        double totalExpenses = expenseManager.getTotalExpenses();
+        long totalExpenses = expenseManager.getTotalExpenses();
         
         LocalDate now = LocalDate.now();
-        double monthlyTotal = expenseManager.getMonthlyTotal(now.getYear(), now.getMonthValue());
+        long monthlyTotal = expenseManager.getMonthlyTotal(now.getYear(), now.getMonthValue());
         double budgetUtilization = expenseManager.getBudgetUtilization(monthlyBudget);
         
         budgetLabel.setText(String.format("$%.2f", monthlyBudget));
-        totalExpensesLabel.setText(String.format("$%.2f", totalExpenses));
+        totalExpensesLabel.setText("$" + Money.format(totalExpenses));
         budgetProgressLabel.setText(String.format("%.1f%%", budgetUtilization));
-        monthlyTotalLabel.setText(String.format("$%.2f", monthlyTotal));
+        monthlyTotalLabel.setText("$" + Money.format(monthlyTotal));
     }
     
     private void addNewExpense() {
@@ -607,10 +642,52 @@ public class DashboardFrame extends JFrame {
     }
     
     private void filterExpenses() {
-        loadExpenses(); // For now, just reload all
+        LocalDate today = LocalDate.now();
+        String filter = (String) filterComboBox.getSelectedItem();
+        
+        if ("This Month".equals(filter)) {
+            currentQuery = new ExpenseQuery().between(today.withDayOfMonth(1), today.withDayOfMonth(today.lengthOfMonth()));
+        } else if ("Last 30 Days".equals(filter)) {
+            currentQuery = new ExpenseQuery().between(today.minusDays(29), today);
+        } else if ("By Category".equals(filter)) {
+            int[] categoryIds = chooseCategories();
+            if (categoryIds == null) {
+                filterComboBox.setSelectedItem("All Expenses");
+                return;
+            }
+            currentQuery = new ExpenseQuery().inCategories(categoryIds);
+        } else {
+            currentQuery = new ExpenseQuery().limit(RECENT_LIMIT);
+        }
+        loadExpenses();
+    }
+    
+    // Ids of the categories picked by the user, or null if none were picked
+    private int[] chooseCategories() {
+        List<Category> categories = expenseManager.getAllCategories();
+        String[] names = new String[categories.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = categories.get(i).getName();
+        }
+        
+        JList<String> list = new JList<>(names);
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        int result = JOptionPane.showConfirmDialog(this, new JScrollPane(list),
+            "Select Categories", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        
+        int[] selected = list.getSelectedIndices();
+        if (result != JOptionPane.OK_OPTION || selected.length == 0) {
+            return null;
+        }
+        int[] categoryIds = new int[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            categoryIds[i] = categories.get(selected[i]).getId();
+        }
+        return categoryIds;
     }
     
     private void refreshData() {
+        expenseManager.reload();
         loadExpenses();
         updateStats();
         JOptionPane.showMessageDialog(this, 
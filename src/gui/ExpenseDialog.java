@@ -80,7 +80,7 @@ public class ExpenseDialog extends JDialog {
     private void loadExpenseData() {
         if (expense != null) {
             titleField.setText(expense.getTitle());
-            amountField.setText(String.valueOf(expense.getAmount()));
+            amountField.setText(Money.format(expense.getAmount()));
             dateField.setText(expense.getDate().toString());
             descriptionArea.setText(expense.getDescription() != null ? expense.getDescription() : "");
             
@@ -102,7 +102,7 @@ public class ExpenseDialog extends JDialog {
                 return;
             }
             
-            double amount = Double.parseDouble(amountField.getText().trim());
+            long amount = Money.parse(amountField.getText());
             if (amount <= 0) {
                 JOptionPane.showMessageDialog(this, "Amount must be greater than 0!");
                 return;
@@ -18,6 +18,7 @@ public class ReportsDialog extends JDialog {
     // UI Components
     private JComboBox<String> reportTypeComboBox;
     private JComboBox<String> monthComboBox, yearComboBox;
+    private JComboBox<String> horizonComboBox;
     private JPanel chartPanel;
     private JTable reportTable;
     private DefaultTableModel tableModel;
@@ -27,6 +28,8 @@ public class ReportsDialog extends JDialog {
 
     JPanel highestLabel;
     
+    JPanel countLabel;
+    
     public ReportsDialog(JFrame parent, ExpenseManager expenseManager) {
         super(parent, "📊 Reports & Analytics", true);
         this.expenseManager = expenseManager;
@@ -58,6 +61,7 @@ public class ReportsDialog extends JDialog {
             "Category-wise Expenses", 
             "Monthly Summary", 
             "Daily Expenses", 
+            "Quarterly Summary", 
             "Spending Trends"
         };
         reportTypeComboBox = new JComboBox<>(reportTypes);
@@ -81,6 +85,12 @@ public class ReportsDialog extends JDialog {
         yearComboBox.setFont(new Font("Arial", Font.PLAIN, 12));
         yearComboBox.addActionListener(e -> generateReport());
         
+        // Trend horizon
+        String[] horizons = {"6 months", "12 months", "24 months", "5 years", "10 years"};
+        horizonComboBox = new JComboBox<>(horizons);
+        horizonComboBox.setFont(new Font("Arial", Font.PLAIN, 12));
+        horizonComboBox.addActionListener(e -> generateReport());
+        
         controlsPanel.add(new JLabel("Report Type:"));
         controlsPanel.add(reportTypeComboBox);
         controlsPanel.add(Box.createHorizontalStrut(20));
@@ -88,6 +98,8 @@ public class ReportsDialog extends JDialog {
         controlsPanel.add(monthComboBox);
         controlsPanel.add(new JLabel("Year:"));
         controlsPanel.add(yearComboBox);
+        controlsPanel.add(new JLabel("Trend:"));
+        controlsPanel.add(horizonComboBox);
         
         headerPanel.add(controlsPanel, BorderLayout.EAST);
         mainPanel.add(headerPanel, BorderLayout.NORTH);
@@ -130,12 +142,12 @@ public class ReportsDialog extends JDialog {
         averageLabel = createStatCard("📈 Average", "$0.00", new Color(46, 204, 113));
         highestLabel = createStatCard("📊 Highest", "$0.00", new Color(155, 89, 182));
         
-        JPanel countPanel = createStatCard("🔢 Count", "0", new Color(241, 196, 15));
+        countLabel = createStatCard("🔢 Count", "0", new Color(241, 196, 15));
         
         panel.add(totalLabel);
         panel.add(averageLabel);
         panel.add(highestLabel);
-        panel.add(countPanel);
+        panel.add(countLabel);
         
         return panel;
     }
@@ -181,6 +193,9 @@ public class ReportsDialog extends JDialog {
             case "Daily Expenses":
                 showDailyReport(year, month);
                 break;
+            case "Quarterly Summary":
+                showQuarterlyReport(year);
+                break;
             case "Spending Trends":
                 showTrendsReport();
                 break;
@@ -188,31 +203,28 @@ public class ReportsDialog extends JDialog {
     }
     
     private void showCategoryReport() {
-        Map<Category, Double> categoryExpenses = expenseManager.getCategoryWiseExpenses();
+        Report<Category> report = expenseManager.getSummary(null, null, Report.Grouping.CATEGORY);
         
         // Update table
         tableModel.setDataVector(new Object[][]{}, new Object[]{"Category", "Amount", "Percentage"});
         
-        double total = 0;
-        for (Map.Entry<Category, Double> entry : categoryExpenses.entrySet()) {
-            double amount = entry.getValue();
-            total += amount;
-            double percentage = (amount / expenseManager.getTotalExpenses()) * 100;
-            
+        long total = report.getOverall().getSum();
+        for (Map.Entry<Category, Report.GroupStats> entry : report.getGroups().entrySet()) {
+            Report.GroupStats stats = entry.getValue();
             tableModel.addRow(new Object[]{
                 entry.getKey().getName(),
-                String.format("$%.2f", amount),
-                String.format("%.1f%%", percentage)
+                "$" + Money.format(stats.getSum()),
+                String.format("%.1f%%", stats.getPercentageOf(total))
             });
         }
         
         // Update stats
-        updateStats(categoryExpenses.values());
+        updateStats(report);
         
         // Add total row
         tableModel.addRow(new Object[]{
             "<html><b>TOTAL</b></html>",
-            String.format("<html><b>$%.2f</b></html>", total),
+            "<html><b>$" + Money.format(total) + "</b></html>",
             "100%"
         });
     }
@@ -223,120 +235,133 @@ public class ReportsDialog extends JDialog {
         tableModel.setDataVector(new Object[][]{}, 
             new Object[]{"Date", "Title", "Category", "Amount", "Payment Method"});
         
-        double total = 0;
         for (Expense expense : monthlyExpenses) {
-            total += expense.getAmount();
-            
             tableModel.addRow(new Object[]{
                 expense.getDate().toString(),
                 expense.getTitle(),
                 expense.getCategory().getName(),
-                String.format("$%.2f", expense.getAmount()),
+                "$" + Money.format(expense.getAmount()),
                 expense.getPaymentMethod().toString()
             });
         }
         
         // Calculate stats
-        if (!monthlyExpenses.isEmpty()) {
-            double average = total / monthlyExpenses.size();
-            Expense highest = monthlyExpenses.stream()
-                .max((e1, e2) -> Double.compare(e1.getAmount(), e2.getAmount()))
-                .orElse(null);
-            
-            totalLabel.removeAll();
-            totalLabel.add(new JLabel(String.format("$%.2f", total)));
-            
-            averageLabel.removeAll();
-            averageLabel.add(new JLabel(String.format("$%.2f", average)));
-            
-            highestLabel.removeAll();
-            if (highest != null) {
-                highestLabel.add(new JLabel(String.format("$%.2f", highest.getAmount())));
-            }
+        YearMonth yearMonth = YearMonth.of(year, month);
+        Report.GroupStats stats = expenseManager.getSummary(yearMonth, yearMonth, Report.Grouping.MONTH).getOverall();
+        if (stats.getCount() > 0) {
+            setStat(totalLabel, "$" + Money.format(stats.getSum()));
+            setStat(averageLabel, "$" + Money.format(stats.getMean()));
+            setStat(highestLabel, "$" + Money.format(stats.getMax()));
+            setStat(countLabel, String.valueOf(stats.getCount()));
         }
     }
     
     private void showDailyReport(int year, int month) {
-        Map<String, Double> dailyExpenses = expenseManager.getDailyExpenses(year, month);
+        long[] dailyTotals = expenseManager.getDailyTotals(year, month);
         
         tableModel.setDataVector(new Object[][]{}, new Object[]{"Date", "Amount"});
         
-        double total = 0;
-        for (Map.Entry<String, Double> entry : dailyExpenses.entrySet()) {
-            total += entry.getValue();
+        long total = 0;
+        long highest = 0;
+        int activeDays = 0;
+        for (int day = 0; day < dailyTotals.length; day++) {
+            if (dailyTotals[day] == 0) continue;
             tableModel.addRow(new Object[]{
-                entry.getKey(),
-                String.format("$%.2f", entry.getValue())
+                LocalDate.of(year, month, day + 1).toString(),
+                "$" + Money.format(dailyTotals[day])
             });
+            total += dailyTotals[day];
+            highest = Math.max(highest, dailyTotals[day]);
+            activeDays++;
         }
         
-        // Calculate stats
-        if (!dailyExpenses.isEmpty()) {
-            double average = total / dailyExpenses.size();
-            double highest = dailyExpenses.values().stream()
-                .mapToDouble(Double::doubleValue)
-                .max()
-                .orElse(0);
-            
-            totalLabel.removeAll();
-            totalLabel.add(new JLabel(String.format("$%.2f", total)));
-            
-            averageLabel.removeAll();
-            averageLabel.add(new JLabel(String.format("$%.2f", average)));
-            
-            highestLabel.removeAll();
-            highestLabel.add(new JLabel(String.format("$%.2f", highest)));
-        }
+        // Calculate stats over the days with expenses
+        if (activeDays == 0) return;
+        setStat(totalLabel, "$" + Money.format(total));
+        setStat(averageLabel, "$" + Money.format(Math.round((double) total / activeDays)));
+        setStat(highestLabel, "$" + Money.format(highest));
+        setStat(countLabel, String.valueOf(expenseManager.getMonthlyCount(year, month)));
     }
     
-    private void showTrendsReport() {
-        // Show last 6 months trend
-        LocalDate now = LocalDate.now();
+    private void showQuarterlyReport(int year) {
+        Report<YearMonth> report = expenseManager.getSummary(
+            YearMonth.of(year, 1), YearMonth.of(year, 12), Report.Grouping.QUARTER);
+        
         tableModel.setDataVector(new Object[][]{}, 
-            new Object[]{"Month", "Total Expenses", "Number of Transactions", "Average/Day"});
+            new Object[]{"Quarter", "Total Expenses", "Number of Transactions", "Largest Expense"});
         
-        double grandTotal = 0;
-        for (int i = 5; i >= 0; i--) {
-            LocalDate monthDate = now.minusMonths(i);
-            int year = monthDate.getYear();
-            int month = monthDate.getMonthValue();
-            
-            List<Expense> monthlyExpenses = expenseManager.getExpensesByMonth(year, month);
-            double monthlyTotal = expenseManager.getMonthlyTotal(year, month);
-            double averagePerDay = monthlyTotal / monthDate.lengthOfMonth();
-            
-            grandTotal += monthlyTotal;
+        for (int quarter = 1; quarter <= 4; quarter++) {
+            Report.GroupStats stats = report.getGroup(YearMonth.of(year, quarter * 3 - 2));
             
             tableModel.addRow(new Object[]{
-                monthDate.getMonth().toString() + " " + year,
-                String.format("$%.2f", monthlyTotal),
-                monthlyExpenses.size(),
-                String.format("$%.2f", averagePerDay)
+                "Q" + quarter + " " + year,
+                "$" + Money.format(stats.getSum()),
+                stats.getCount(),
+                "$" + Money.format(stats.getMax())
             });
         }
         
-        // Update stats
-        totalLabel.removeAll();
-        totalLabel.add(new JLabel(String.format("$%.2f", grandTotal)));
+        updateStats(report);
         
-        averageLabel.removeAll();
-        averageLabel.add(new JLabel(String.format("$%.2f", grandTotal / 6)));
+        tableModel.addRow(new Object[]{
+            "<html><b>TOTAL</b></html>",
+            "<html><b>$" + Money.format(report.getOverall().getSum()) + "</b></html>",
+            report.getOverall().getCount(),
+            "$" + Money.format(report.getOverall().getMax())
+        });
     }
     
-    private void updateStats(Collection<Double> values) {
-        if (values.isEmpty()) return;
+    private void showTrendsReport() {
+        int[] horizonMonths = {6, 12, 24, 60, 120};
+        Trend trend = expenseManager.getTrend(horizonMonths[horizonComboBox.getSelectedIndex()]);
+        long[] movingAverage = trend.getMovingAverage(3);
         
-        double total = values.stream().mapToDouble(Double::doubleValue).sum();
-        double average = total / values.size();
-        double highest = values.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        tableModel.setDataVector(new Object[][]{}, 
+            new Object[]{"Month", "Total Expenses", "Number of Transactions", "Average/Day",
+                "Change", "3-Month Average"});
         
-        totalLabel.removeAll();
-        totalLabel.add(new JLabel(String.format("$%.2f", total)));
+        for (int i = 0; i < trend.size(); i++) {
+            YearMonth month = trend.getMonth(i);
+            double percent = trend.getPercentChange(i);
+            
+            tableModel.addRow(new Object[]{
+                month.getMonth().toString() + " " + month.getYear(),
+                "$" + Money.format(trend.getTotal(i)),
+                trend.getCount(i),
+                "$" + Money.format(trend.getAveragePerDay(i)),
+                i == 0 ? "" : (trend.getChange(i) >= 0 ? "+$" : "-$") + Money.format(Math.abs(trend.getChange(i)))
+                    + (Double.isNaN(percent) ? "" : String.format(" (%+.1f%%)", percent)),
+                "$" + Money.format(movingAverage[i])
+            });
+        }
         
-        averageLabel.removeAll();
-        averageLabel.add(new JLabel(String.format("$%.2f", average)));
+        // Update stats
+        setStat(totalLabel, "$" + Money.format(trend.getGrandTotal()));
+        setStat(averageLabel, "$" + Money.format(trend.getMonthlyAverage()));
+        setStat(highestLabel, "$" + Money.format(trend.getTotal(trend.getPeakIndex())));
+        setStat(countLabel, String.valueOf(trend.getTotalCount()));
+    }
+    
+    // Card stats are per group: average and highest are over the report's groups
+    private void updateStats(Report<?> report) {
+        if (report.isEmpty()) return;
+        
+        Collection<Report.GroupStats> groups = report.getGroups().values();
+        long total = report.getOverall().getSum();
+        long highest = 0;
+        for (Report.GroupStats group : groups) {
+            highest = Math.max(highest, group.getSum());
+        }
         
-        highestLabel.removeAll();
-        highestLabel.add(new JLabel(String.format("$%.2f", highest)));
+        setStat(totalLabel, "$" + Money.format(total));
+        setStat(averageLabel, "$" + Money.format(Math.round((double) total / groups.size())));
+        setStat(highestLabel, "$" + Money.format(highest));
+        setStat(countLabel, String.valueOf(report.getOverall().getCount()));
+    }
+    
+    private void setStat(JPanel card, String value) {
+        card.removeAll();
+        card.add(new JLabel(value));
+        card.revalidate();
     }
-}
\ No newline at end of file
+}